@@ -4,13 +4,38 @@ import com.tictactoe.GomokuApp.TILE_STATUS;
 import com.tictactoe.GomokuApp.TURN;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
 
 /**
  * TicTacToe Computer Game Algorithm class.
  *
  */
-public class GameAlgorithm {
+public class GameAlgorithm implements AutoCloseable {
 	private TILE_STATUS[] currentTable;
 	private final Random r;
 	private final int n;
@@ -21,11 +46,29 @@ public class GameAlgorithm {
 		NOTMET, MET, NODEATHORALLDEATH, SOMEDEATH, WIN
 	}
 
-	public SEARCHMODE2STATUS searchMode2Status;
+	public volatile SEARCHMODE2STATUS searchMode2Status; // volatile because the threads of a tree parallel search share it
 	
 	public final int COUNTWIN = 5; // number of straight row, column or diagonal to become the winner. COUNTWIN is used in checkWinnder()
 
 	public final int GAMESTATELENGTH; 
+
+	private final int BITBOARDWORDS; // number of longs needed to hold one bit per tile for one player
+
+	// precomputed win tables used by checkWinner(BitBoard, int), built once by buildWinTables()
+	// the windows through tile i are the entries winCellStart[i] .. winCellStart[i+1]-1
+	private int[] winCellStart; 
+	private int[] winEntryWord; // first BitBoard word touched by the window of an entry
+	private int[] winEntrySpan; // number of BitBoard words touched by the window of an entry
+	private long[] winEntryMask; // winMaskSlots masks per entry, one per touched word
+	private int winMaskSlots;
+	private int[] winNeighborWord; // first BitBoard word touched by the 8 neighbours of a tile
+	private long[] winNeighborMask; // winNeighborSlots masks per tile covering its 8 neighbours
+	private int winNeighborSlots;
+	private int winWindows; // number of windows
+	private int[] winEntryWindow; // window of an entry, numbered 0 .. winWindows-1
+	private int[] winWindowTiles; // the COUNTWIN tiles of every window
+	
+	private long[] zobristKeys; // one random key per tile and player, see BitBoard.zobristHash()
 	
 	public int NODE_SELECTION_MODE = 1;
 	// only meaningful if SEARCH_MODE = 1 or 2
@@ -37,8 +80,149 @@ public class GameAlgorithm {
 	// 1 means MCTS
 	// 2 means combined minimax and MCTS; NUMSIMULATIONDEPTH only meaningful in this mode
 
+	public int TREE_MODE = 0;
+	// only meaningful if SEARCH_MODE = 1 or 2
+	// 0 means the MCTS tree is built from MCTSNode objects
+	// 1 means the MCTS tree is kept in the MCTSNodePool primitive arrays, which are reused between calls to choseTile()
+	// 2 means the MCTS tree is built from MCTSNode objects, but only the root keeps a game state. 
+	//   The root game state is walked down the tree by placing and removing moves (also used by SEARCH_MODE = 0)
+
+	private MCTSNodePool nodePool; // created on the first search with TREE_MODE = 1
+
+	public int NUMTHREADS = 1;
+	// only meaningful if SEARCH_MODE = 1 or 2
+	// 1 means a single search tree on the calling thread
+	// N > 1 means parallel MCTS with N threads, see PARALLEL_MODE. 
+	//   The level 1 moves of minimax_alphabeta() are then also evaluated by N fork-join threads
+
+	public int PARALLEL_MODE = 0;
+	// only meaningful if NUMTHREADS > 1
+	// 0 means root parallel MCTS: N independent trees, each in its own worker GameAlgorithm with its own 
+	//   random seed, searched concurrently with NUMROLLOUTSIMULATION / N roll outs each. 
+	//   The root child statistics of all trees are merged before the move is chosen
+	// 1 means tree parallel MCTS: N threads share one MCTSNode tree and NUMROLLOUTSIMULATION roll outs. 
+	//   Node statistics are updated atomically, expansion is claimed with a compare-and-set, and 
+	//   VIRTUALLOSS spreads the threads over different paths. TREE_MODE = 1 is not used in this mode
+
+	public int VIRTUALLOSS = 1; 
+	// number of lost visits a tree parallel thread adds to each node on its current path until its roll out is backed up
+
+	private volatile boolean sharedTreeSearch; // true while a tree parallel search runs
+	
+	// lock-free updates of the MCTSNode statistics
+	private static final AtomicIntegerFieldUpdater<MCTSNode> SCORE = AtomicIntegerFieldUpdater.newUpdater(MCTSNode.class, "score");
+	private static final AtomicIntegerFieldUpdater<MCTSNode> TIMESVISITED = AtomicIntegerFieldUpdater.newUpdater(MCTSNode.class, "timesVisited");
+	private static final AtomicIntegerFieldUpdater<MCTSNode> VIRTUALLOSSES = AtomicIntegerFieldUpdater.newUpdater(MCTSNode.class, "virtualLosses");
+	private static final AtomicIntegerFieldUpdater<MCTSNode> EXPANDSTATE = AtomicIntegerFieldUpdater.newUpdater(MCTSNode.class, "expandState");
+	private static final AtomicIntegerFieldUpdater<MCTSNode> AMAFSCORE = AtomicIntegerFieldUpdater.newUpdater(MCTSNode.class, "amafScore");
+	private static final AtomicIntegerFieldUpdater<MCTSNode> AMAFVISITS = AtomicIntegerFieldUpdater.newUpdater(MCTSNode.class, "amafVisits");
+
+	private GameAlgorithm[] rootWorkers;
+	private ExecutorService searchExecutor;
+	private int searchExecutorThreads;
+	private ForkJoinPool minimaxPool; // fork-join threads of minimax_alphabeta(), created when NUMTHREADS > 1
+	private final ThreadLocal<RolloutEngine> rolloutEngine = new ThreadLocal<RolloutEngine>() {
+		@Override
+		protected RolloutEngine initialValue() {
+			return new RolloutEngine();
+		}
+	}; // every thread running simulations gets its own engine and scratch buffers, see also close()
+	private final ThreadLocal<ThreatSearch> threatSearch = new ThreadLocal<ThreatSearch>() {
+		@Override
+		protected ThreatSearch initialValue() {
+			return new ThreatSearch();
+		}
+	};
+
 	public final int NUMROLLOUTSIMULATION = 30000; 
 	
+	public long SEARCHTIMELIMIT = 0;
+	// only meaningful if SEARCH_MODE = 1 or 2
+	// wall-clock milliseconds per move for choseTile(int); the search stops at NUMROLLOUTSIMULATION roll outs 
+	// or at the time limit, whichever comes first, and returns the best move found so far
+	// 0 means no time limit
+	
+	private volatile SearchBudget searchBudget; // budget of the running search, also checked by minimax_alphabeta()
+	private volatile SearchStatistics searchStatistics = new SearchStatistics(0); // statistics of the running or last search
+	
+	public int TREE_REUSE = 1;
+	// only meaningful if the search builds an MCTSNode tree (SEARCH_MODE = 1 or 2, not TREE_MODE = 1 nor root parallel)
+	// 0 means every call to choseTile() starts from a fresh tree
+	// 1 means the tree is kept between calls to choseTile(); the node reached by the computer's chosen move and 
+	//   the person's reply previousMove becomes the new top node, the rest of the old tree is released
+	
+	private MCTSNode lastTopNode; // top node of the previous search if its tree may be reused
+	private int lastChosenMove; // move returned by the previous search
+	
+	public int PONDERROLLOUTS = 0;
+	// only meaningful if TREE_REUSE = 1, see startPondering()
+	// maximum number of roll outs while the person thinks. pondering also stops once it has created as many nodes 
+	// as the TranspositionTable holds (2^TRANSPOSITIONTABLEBITS), which bounds the memory of the pondered tree
+	// 0 means no pondering
+	// pondering keeps one core busy on every turn of the person until it stops, and the pondered tree stays in 
+	// memory until the next choseTile(). with TRANSPOSITIONTABLEBITS = 20 and full width moves it reached the node 
+	// limit after about 1 s, with about 180 MB of nodes on a 9x9 board and 245 MB on a 19x19 board
+	
+	private Thread ponderThread; // running the trials of startPondering(), null if the engine does not ponder
+	private volatile boolean ponderStopped;
+	private final Random ponderRandom; // random source of the ponder thread, so that pondering does not change the numbers of r
+	
+	public int TRANSPOSITION_MODE = 0;
+	// only meaningful if the search builds an MCTSNode tree (SEARCH_MODE = 1 or 2, not TREE_MODE = 1)
+	// 0 means every move order gets its own nodes, the search builds a tree
+	// 1 means expand() links a child to the node already created for the same game state, reached by another 
+	//   move order, through the TranspositionTable. The statistics of the game state are shared and the search 
+	//   builds a DAG
+	
+	public int TRANSPOSITIONTABLEBITS = 20; // the TranspositionTable holds 2^TRANSPOSITIONTABLEBITS nodes
+	
+	public int WIDENING_MODE = 0;
+	// only meaningful if the search builds an MCTSNode tree (SEARCH_MODE = 1 or 2, not TREE_MODE = 1)
+	// 0 means expand() creates the child nodes of all candidate moves at once
+	// 1 means progressive widening: expand() orders the candidate moves by movePrior() and creates the child nodes 
+	//   one at a time, a node visited v times has up to 1 + WIDENINGCOEFFICIENT * v^WIDENINGEXPONENT of them. 
+	//   the top node always gets all of its child nodes, as the move is chosen among them
+	
+	public float WIDENINGCOEFFICIENT = 2;
+	public float WIDENINGEXPONENT = 0.5f;
+	
+	public int RAVE_MODE = 0;
+	// only meaningful if the search builds an MCTSNode tree (SEARCH_MODE = 1 or 2, not TREE_MODE = 1)
+	// 0 means bestUCTSelection() uses the score of the child nodes only
+	// 1 means RAVE: every node also keeps all-moves-as-first (AMAF) statistics, the trials in which the player of 
+	//   its move played that move at any time after the parent node, in the tree or in the roll out. the selection 
+	//   uses (1 - beta) * score + beta * AMAF score with beta = sqrt(RAVEEQUIVALENCE / (3 * visits + RAVEEQUIVALENCE))
+	// 2 means RAVE as 1, with the minimum MSE schedule beta = m / (visits + m + 4 * visits * m * RAVEBIAS^2), 
+	//   where m is the number of AMAF visits
+	
+	public int RAVEEQUIVALENCE = 1000; // visits at which score and AMAF score weigh the same, RAVE_MODE = 1
+	public float RAVEBIAS = 0.1f; // assumed difference between the AMAF score and the score, RAVE_MODE = 2
+	
+	public int EARLYSTOP_MODE = 0;
+	// only meaningful if SEARCH_MODE = 1 or 2 and the search runs MCTSNode.runSearch() (not TREE_MODE = 1, not tree parallel)
+	// 0 means the search runs until its budget is exhausted
+	// 1 means the search stops early once the remaining roll outs can no longer change the move of selectMove(): 
+	//   the child node of the top node with the best average score keeps a better average, with every remaining 
+	//   roll out lost, than every other child node with every remaining roll out won. 
+	//   the unused budget is saved, up to one full budget
+	// 2 means 1, and a critical search, where another child node than the most visited one has the best average 
+	//   score when the budget is exhausted, continues with up to EXTENSIONFRACTION of a budget taken from the saved budget
+	
+	public float EXTENSIONFRACTION = 0.5f;
+	
+	private int savedRollouts; // budget saved by the early stops of EARLYSTOP_MODE
+	private long savedMillis;
+	
+	public int SOLVER_MODE = 0;
+	// only meaningful if the search builds an MCTSNode tree (SEARCH_MODE = 1 or 2, not TREE_MODE = 1)
+	// 0 means a terminal node only adds the result of its trials to the score
+	// 1 means MCTS-Solver: a terminal node is a proven win of the player who moved into it. a node is a proven win 
+	//   of the player to move if one of its child nodes is, and a proven loss if all its candidate moves lead to 
+	//   proven wins of the opponent. a trial that reaches a proven node returns its winner without searching below 
+	//   it, the selection skips the child nodes that are proven losses, and the search stops once the top node is proven
+	
+	private TranspositionTable transpositionTable; // table of the running search, null if TRANSPOSITION_MODE = 0
+	
 	public final int NUMTREELEVEL_MCTS; 
 	public final int NUMTREELEVEL_MINIMAX; 
 	// GAMESTATELENGTH means keeping on expanding as if level is infinity, 
@@ -49,7 +233,37 @@ public class GameAlgorithm {
 	// NUMTREELEVEL_MCTS = GAMESTATELENGTH is the maximum level of expansion.
 	// NUMTREELEVEL_MCTS = 2 is the smallest expansion level. Usually MCTS cannot detect immediate traps at this level.
 
-	public static final int NUMSIMULATIONDEPTH = 4; 
+	public int MINIMAXDEPTH = 4;
+	// only meaningful if SEARCH_MODE = 2
+	// number of levels below the top node searched by minimax_alphabeta(). 4 is the depth of the original minimax check,
+	// 6 also sees the double threats the person can make with the second move
+	
+	public int THREAT_MODE = 0;
+	// only meaningful if SEARCH_MODE = 1 or 2
+	// 0 means no threat-space search
+	// 1 means a ThreatSearch for a victory by continuous fours (VCF) at the top node before MCTS. A VCF of the computer 
+	//   is played at once; if the person has a VCF, the search is restricted to the moves that defend against it
+	// 2 means 1, and also a ThreatSearch at every leaf node before its roll out: if the player to move there has a VCF, 
+	//   the roll out is counted as a win of that player
+
+	public int VCFDEPTH = 15; // max number of attacker moves in a VCF, each one followed by the forced reply
+	public int VCFNODES = 20000; // max game states visited by one ThreatSearch at the top node
+	public int VCFLEAFNODES = 200; // max game states visited by one ThreatSearch at a leaf node
+	
+	public int ROLLOUT_MODE = 0;
+	// policy of the roll out simulations, see RolloutPolicy
+	// 0 means uniformly random moves
+	// 1 means pattern weighted moves, see PatternPolicy: an immediate win is played, a four of the opponent 
+	//   is blocked, and moves that extend or block threes are preferred
+	// 2 means minimax in the roll out (MCTS-MR), see TacticalPolicy: an immediate win is played, an immediate win 
+	//   of the opponent is blocked, and the other moves are uniformly random
+	
+	public int NEIGHBOURDISTANCE = 0;
+	// candidate moves of expand(), the roll outs and minimax_alphabeta() are the empty tiles within NEIGHBOURDISTANCE 
+	// rows and columns of a tile of either player, see CandidateSet. 2 keeps every move that can make a four
+	// 0 means every empty tile is a candidate
+	
+	public int NUMSIMULATIONDEPTH = 4; 
 	// GAMESTATELENGTH means always running minimax after a roll out simulation, 
 	// because the max number of simulation depth is strictly less than GAMESTATELENGTH
 	// in general, NUMSIMULATIONDEPTH means that if a roll out simulation hits a terminal state <= NUMSIMULATIONDEPTH steps 
@@ -57,567 +271,3150 @@ public class GameAlgorithm {
 	// 0 means never running minimax after a roll out simulation
 	
 	public GameAlgorithm(TILE_STATUS[] curTable) {
+		this(curTable, 1);
+	}
+	
+	public GameAlgorithm(TILE_STATUS[] curTable, long seed) {
 		currentTable = curTable;
-	    r = new Random(1); // random number seed
+	    r = new Random(seed); // random number seed
+	    ponderRandom = new Random(~seed);
 	    GAMESTATELENGTH = currentTable.length;
 	    n = (int) Math.sqrt(GAMESTATELENGTH);
 	    minimax4Moves = new int[GAMESTATELENGTH];
+	    BITBOARDWORDS = (GAMESTATELENGTH + 63) >>> 6;
 	    NUMTREELEVEL_MCTS = GAMESTATELENGTH;
 	    NUMTREELEVEL_MINIMAX = GAMESTATELENGTH;
+	    buildWinTables();
+	    buildZobristKeys(seed);
 	}
 
-	
-
-	public class MCTSNode
+	private void buildWinTables() 
+	// every COUNTWIN long stretch of a row, column or diagonal is one window with a bit mask.
+	// a run of at least COUNTWIN through a tile exists exactly when one of the windows through
+	// that tile is filled with its color, so checkWinner only needs to test a few masks
 	{
-		private ArrayList<MCTSNode> nextMoves;
-		private TILE_STATUS[] nodeGameState;
-		private TURN nodeTurn;
-		private int score;
-		private int timesVisited;
-		private boolean expanded;
-		private int indexFromParentNode;
-		private int levelFromTopNode;
-		private int simulationDepth;
-
-		public MCTSNode(TILE_STATUS[] state, TURN myTurn, int indexMove, int levelCount)
-		{
-			nodeGameState = new TILE_STATUS[GAMESTATELENGTH];
-			for (int index = 0; index < GAMESTATELENGTH; index++) 
-				nodeGameState[index] = state[index];
-		   	nodeTurn = myTurn; // nodeTurn is the TURN to make a move given the state = nodeGameState. nodeGameState does not include that move
-		   	timesVisited = 0;
-		   	score = 0;
-		   	nextMoves = null;
-		   	expanded = false;
-		   	indexFromParentNode = indexMove; // the present node is reached from its parent node by taking a move at indexFromParentNode
-		   	levelFromTopNode = levelCount; // the present node is level levelFromTopNode from the root node
-		   	// simulationDepth is only used when SEARCH_MODE = 2; 
-		   	simulationDepth = 0; // initially the present node has not started roll out simulation yet
-		}
+		int[] dxs = {1, 0, 1, -1};
+		int[] dys = {0, 1, 1, 1};
+		ArrayList<Integer> windows = new ArrayList<Integer>(); // start tile * 4 + direction
+		int[] windowsPerCell = new int[GAMESTATELENGTH];
 		
-		public void printGameState(TILE_STATUS[] state) {
-			for (int i = 0; i < n; i++) {
-				for (int j = 0; j < n; j++) {
-					int index = i*n+j;
-					if (state[index] == TILE_STATUS.TILE_STATUS_EMPTY)
-						System.out.format( "-1 ");
-					else if (state[index] == TILE_STATUS.TILE_STATUS_PERSON)
-						System.out.format( " 0 ");
-					else 
-						System.out.format( " 1 ");
+		for (int dir = 0; dir < 4; dir++) {
+			for (int y = 0; y < n; y++) {
+				for (int x = 0; x < n; x++) {
+					int endX = x + (COUNTWIN-1) * dxs[dir];
+					int endY = y + (COUNTWIN-1) * dys[dir];
+					if ((endX < 0) || (endX >= n) || (endY >= n))
+						continue;
+					windows.add((x+y*n) * 4 + dir);
+					for (int k = 0; k < COUNTWIN; k++)
+						windowsPerCell[(x+k*dxs[dir]) + (y+k*dys[dir])*n]++;
 				}
-				System.out.println("");
 			}
-			System.out.println("");
 		}
-
-		public void printAllNodes() {
-			
-			for (int index = 0; index < GAMESTATELENGTH; index++) {
-				if (nodeGameState[index] == TILE_STATUS.TILE_STATUS_EMPTY)
-					System.out.format( "-1 ");
-				else if (nodeGameState[index] == TILE_STATUS.TILE_STATUS_PERSON)
-					System.out.format( " 0 ");
-				else 
-					System.out.format( " 1 ");
+		
+		int numWindows = windows.size();
+		winMaskSlots = 1;
+		for (int w = 0; w < numWindows; w++) {
+			int start = windows.get(w) / 4;
+			int dir = windows.get(w) % 4;
+			int end = start + (COUNTWIN-1) * (dxs[dir] + dys[dir]*n);
+			winMaskSlots = Math.max(winMaskSlots, (Math.max(start, end) >>> 6) - (Math.min(start, end) >>> 6) + 1);
+		}
+		
+		winCellStart = new int[GAMESTATELENGTH + 1];
+		for (int index = 0; index < GAMESTATELENGTH; index++)
+			winCellStart[index+1] = winCellStart[index] + windowsPerCell[index];
+		int numEntries = winCellStart[GAMESTATELENGTH];
+		winEntryWord = new int[numEntries];
+		winEntrySpan = new int[numEntries];
+		winEntryMask = new long[numEntries * winMaskSlots];
+		winWindows = numWindows;
+		winEntryWindow = new int[numEntries];
+		winWindowTiles = new int[numWindows * COUNTWIN];
+		int[] filled = new int[GAMESTATELENGTH];
+		
+		for (int w = 0; w < numWindows; w++) {
+			int start = windows.get(w) / 4;
+			int dir = windows.get(w) % 4;
+			int step = dxs[dir] + dys[dir]*n;
+			int first = Math.min(start, start + (COUNTWIN-1) * step) >>> 6;
+			int last = Math.max(start, start + (COUNTWIN-1) * step) >>> 6;
+			long[] masks = new long[winMaskSlots];
+			for (int k = 0; k < COUNTWIN; k++) {
+				int index = start + k * step;
+				masks[(index >>> 6) - first] |= 1L << index;
 			}
-			System.out.println(" turn: " + nodeTurn + " time: " + timesVisited + " score: " + score);
-			if (!isLeaf()) {
-				for (int i = 0; i < nextMoves.size(); i++) 
-					nextMoves.get(i).printAllNodes();
+			// each tile of the window gets its own copy of the window so that checkWinner reads 
+			// the entries of a tile sequentially
+			for (int k = 0; k < COUNTWIN; k++) {
+				int index = start + k * step;
+				int entry = winCellStart[index] + filled[index];
+				filled[index]++;
+				winEntryWord[entry] = first;
+				winEntrySpan[entry] = last - first + 1;
+				System.arraycopy(masks, 0, winEntryMask, entry * winMaskSlots, winMaskSlots);
+				winEntryWindow[entry] = w;
+				winWindowTiles[w * COUNTWIN + k] = index;
 			}
 		}
-
-		public void printAnNode(TILE_STATUS[] state, int mode, int num_sim, int index) {
-			
-			boolean matched = true;
-			
-			for (int i = 0; i < GAMESTATELENGTH; i++) {
-				if (nodeGameState[i] != state[i]) {
-					matched = false;
-					break;
-				}
-			} // find the node whose game state exactly matches the given state
-			if (matched == true) {
-				if (timesVisited>0)
-//					System.out.println(" turn: " + nodeTurn + " time: " + timesVisited + " score: " + score + " float score = " +((float) score) / ((float) timesVisited));
-					System.out.println("v"+ index+"(" + num_sim + ")=" + timesVisited + "; s"+index+"(" + num_sim + ")=" +((float) score) / ((float) timesVisited) +";");
-				if ((mode == 1) && (!isLeaf())) { // print all its child nodes if any, if mode == 1
-					for (int i = 0; i < nextMoves.size(); i++) {
-						MCTSNode node = nextMoves.get(i);
-						System.out.println("v(" +(i+1)+ ")="+ node.timesVisited + "; s(" +(i+1)+")=" + node.score +";");
-					}
-						
+		
+		// a tile without any neighbour of its own color cannot be part of a run longer than 1,
+		// this is checked before any window and rejects most moves on a sparse board
+		winNeighborSlots = ((2*n + 2) >>> 6) + 2;
+		winNeighborWord = new int[GAMESTATELENGTH];
+		winNeighborMask = new long[GAMESTATELENGTH * winNeighborSlots];
+		for (int index = 0; index < GAMESTATELENGTH; index++) {
+			int x = index % n;
+			int y = index / n;
+			winNeighborWord[index] = Math.max(index - n - 1, 0) >>> 6;
+			for (int dy = -1; dy <= 1; dy++) {
+				for (int dx = -1; dx <= 1; dx++) {
+					if (((dx == 0) && (dy == 0)) || (x+dx < 0) || (x+dx >= n) || (y+dy < 0) || (y+dy >= n))
+						continue;
+					int neighbor = (x+dx) + (y+dy)*n;
+					winNeighborMask[index * winNeighborSlots + (neighbor >>> 6) - winNeighborWord[index]] |= 1L << neighbor;
 				}
 			}
-			
-			if (!isLeaf()) {
-				for (int i = 0; i < nextMoves.size(); i++) 
-					nextMoves.get(i).printAnNode(state, mode, num_sim, index);
-			}
 		}
+	}
+	
+	private void buildZobristKeys(long seed) {
+		// a generator of its own, so that the keys do not change the sequence of r
+		Random keys = new Random(seed);
+		zobristKeys = new long[2 * GAMESTATELENGTH];
+		for (int i = 0; i < zobristKeys.length; i++)
+			zobristKeys[i] = keys.nextLong();
+	}
+	
+	public long zobristKey(int index, TURN turn) {
+		// the hash of a game state changes by this key when turn places or removes a tile at index
+		return (turn == TURN.COMPUTER_TURN) ? zobristKeys[index] : zobristKeys[GAMESTATELENGTH + index];
+	}
 
-		public TILE_STATUS[] getGameState() {
-			return nodeGameState;
+	
+
+	public class BitBoard
+	// compact game state used by all search paths: one bitset per player packed into longs.
+	// bit index is the same tile index used by TILE_STATUS[] tables; 
+	// words [0, BITBOARDWORDS) hold computer tiles, words [BITBOARDWORDS, 2*BITBOARDWORDS) hold person tiles
+	{
+		private final long[] bits;
+		
+		public BitBoard() {
+			bits = new long[2 * BITBOARDWORDS];
 		}
 		
-		public int getSimulationDepth() {
-			return simulationDepth;
+		public BitBoard(BitBoard state) {
+			bits = state.bits.clone();
 		}
-
-		public void resetSimulationDepth() {
-			simulationDepth = 0;
+		
+		public BitBoard(TILE_STATUS[] table) {
+			// conversion from the GomokuApp table, only used at the API boundary
+			bits = new long[2 * BITBOARDWORDS];
+			for (int index = 0; index < GAMESTATELENGTH; index++) {
+				if (table[index] == TILE_STATUS.TILE_STATUS_COMPUTER)
+					bits[index >>> 6] |= 1L << index;
+				else if (table[index] == TILE_STATUS.TILE_STATUS_PERSON)
+					bits[BITBOARDWORDS + (index >>> 6)] |= 1L << index;
+			}
 		}
-
-		public boolean isLeaf()
-		{
-			return (nextMoves == null || nextMoves.isEmpty());
+		
+		public void copyFrom(BitBoard state) {
+			System.arraycopy(state.bits, 0, bits, 0, bits.length);
 		}
-
-		public void incScore() {
-			score++;
+		
+		public boolean isEmpty(int index) {
+			return ((bits[index >>> 6] | bits[BITBOARDWORDS + (index >>> 6)]) & (1L << index)) == 0;
 		}
-		   
-		public void decScore()
-		{
-		    score--;
-		}   
-		   
-		public void visit()
+		
+		public boolean isComputer(int index) {
+			return (bits[index >>> 6] & (1L << index)) != 0;
+		}
+		
+		public boolean isPerson(int index) {
+			return (bits[BITBOARDWORDS + (index >>> 6)] & (1L << index)) != 0;
+		}
+		
+		public TILE_STATUS getTile(int index) {
+			if (isComputer(index))
+				return TILE_STATUS.TILE_STATUS_COMPUTER;
+			else if (isPerson(index))
+				return TILE_STATUS.TILE_STATUS_PERSON;
+			else 
+				return TILE_STATUS.TILE_STATUS_EMPTY;
+		}
+		
+		public void place(int index, TURN turn) {
+			// the tile at index must be empty 
+			if (turn == TURN.COMPUTER_TURN) 
+				bits[index >>> 6] |= 1L << index;
+			else 
+				bits[BITBOARDWORDS + (index >>> 6)] |= 1L << index;
+		}
+		
+		public void remove(int index) {
+			bits[index >>> 6] &= ~(1L << index);
+			bits[BITBOARDWORDS + (index >>> 6)] &= ~(1L << index);
+		}
+		
+		public int nextEmpty(int fromIndex) 
+		// returns the first empty tile index >= fromIndex, or -1 if there is none
 		{
-			timesVisited++;
+			if (fromIndex >= GAMESTATELENGTH)
+				return -1;
+			int word = fromIndex >>> 6;
+			long empty = ~(bits[word] | bits[BITBOARDWORDS + word]) & (-1L << fromIndex);
+			while (true) {
+				if (empty != 0) {
+					int index = (word << 6) + Long.numberOfTrailingZeros(empty);
+					return (index < GAMESTATELENGTH) ? index : -1;
+				}
+				if (++word == BITBOARDWORDS)
+					return -1;
+				empty = ~(bits[word] | bits[BITBOARDWORDS + word]);
+			}
 		}
-
-		public int getTimesVisited()
+		
+		public int countEmpty() {
+			int count = GAMESTATELENGTH;
+			for (int word = 0; word < 2 * BITBOARDWORDS; word++)
+				count -= Long.bitCount(bits[word]);
+			return count;
+		}
+		
+		public boolean sameAs(BitBoard state) {
+			return Arrays.equals(bits, state.bits);
+		}
+		
+		public int countNeighbors(int index) {
+			// number of the 8 neighbours of index that hold a tile of either player, see buildWinTables()
+			int count = 0;
+			int first = winNeighborWord[index];
+			for (int k = 0; (k < winNeighborSlots) && (first + k < BITBOARDWORDS); k++) {
+				long tiles = bits[first + k] | bits[BITBOARDWORDS + first + k];
+				count += Long.bitCount(tiles & winNeighborMask[index * winNeighborSlots + k]);
+			}
+			return count;
+		}
+		
+		public boolean hasNeighbor(int index) {
+			// true if one of the 8 neighbours of index holds a tile of either player, see buildWinTables()
+			int first = winNeighborWord[index];
+			for (int k = 0; (k < winNeighborSlots) && (first + k < BITBOARDWORDS); k++) {
+				long tiles = bits[first + k] | bits[BITBOARDWORDS + first + k];
+				if ((tiles & winNeighborMask[index * winNeighborSlots + k]) != 0)
+					return true;
+			}
+			return false;
+		}
+		
+		public long zobristHash() 
+		// XOR of the zobristKey() of all tiles; the search updates it incrementally with one XOR per move
 		{
-			return timesVisited;
+			long hash = 0;
+			for (int index = 0; index < GAMESTATELENGTH; index++) {
+				if (isComputer(index))
+					hash ^= zobristKey(index, TURN.COMPUTER_TURN);
+				else if (isPerson(index))
+					hash ^= zobristKey(index, TURN.PERSON_TURN);
+			}
+			return hash;
 		}
+	}
 
-		public int getScore()
-		{
-			return score;
+	public static class CancellationToken
+	// cancels a running search from another thread, see choseTile(int, int, long, CancellationToken)
+	{
+		private volatile boolean cancelled;
+		
+		public void cancel() {
+			cancelled = true;
 		}
 		
-		public int getindexFromParentNode() 
-		{
-			return indexFromParentNode;
+		public boolean isCancelled() {
+			return cancelled;
 		}
+	}
+	
+	public static class SearchBudget
+	// roll out and wall-clock budget of one search. 
+	// the deadline is checked with one System.nanoTime() call, cheap enough to do before every roll out.
+	// the search is cancelled by its CancellationToken, or by an interrupt of the thread that created the budget 
+	// (the thread running the search); the threads of a parallel search check the same token and thread
+	{
+		private final int maxRollouts;
+		private final long start; // in System.nanoTime() units
+		private final long deadline; 
+		private final boolean hasDeadline;
+		private final CancellationToken token;
+		private final Thread searchThread;
 		
-		public TURN getTurn() {
-			return nodeTurn;
+		public SearchBudget(int maxRollouts, long timeLimitMillis) {
+			this(maxRollouts, timeLimitMillis, new CancellationToken());
 		}
-
-		public TURN getNextTurn(TURN turn) {
-			if (turn == TURN.COMPUTER_TURN)	
-				return TURN.PERSON_TURN;
-			else if (turn == TURN.PERSON_TURN)
-				return TURN.COMPUTER_TURN;
-			else { 
-				System.out.println("error in getNextTurn input");
-				return TURN.GAME_RESET;
+		
+		public SearchBudget(int maxRollouts, long timeLimitMillis, CancellationToken token) {
+			this.maxRollouts = maxRollouts;
+			hasDeadline = (timeLimitMillis > 0);
+			start = System.nanoTime();
+			deadline = start + timeLimitMillis * 1000000L;
+			this.token = token;
+			searchThread = Thread.currentThread();
+		}
+		
+		private SearchBudget(int maxRollouts, long start, long deadline, boolean hasDeadline, SearchBudget budget) {
+			this.maxRollouts = maxRollouts;
+			this.start = start;
+			this.deadline = deadline;
+			this.hasDeadline = hasDeadline;
+			token = budget.token;
+			searchThread = budget.searchThread;
+		}
+		
+		public SearchBudget share(int parts) {
+			// the budget of one of parts concurrent searches: a share of the roll outs, the same deadline and token
+			return new SearchBudget((maxRollouts + parts - 1) / parts, start, deadline, hasDeadline, this);
+		}
+		
+		public SearchBudget extend(int rollouts, long timeLimitMillis) {
+			// a further budget for the same search, starting now
+			long now = System.nanoTime();
+			return new SearchBudget(rollouts, now, now + timeLimitMillis * 1000000L, (timeLimitMillis > 0), this);
+		}
+		
+		public void cancel() {
+			token.cancel();
+		}
+		
+		public boolean isCancelled() {
+			return token.isCancelled() || searchThread.isInterrupted();
+		}
+		
+		public int getMaxRollouts() {
+			return maxRollouts;
+		}
+		
+		public long getTimeLimitMillis() {
+			// 0 if there is no deadline
+			return hasDeadline ? (deadline - start) / 1000000L : 0;
+		}
+		
+		public long remainingMillis() {
+			// 0 if there is no deadline
+			return hasDeadline ? Math.max(deadline - System.nanoTime(), 0) / 1000000L : 0;
+		}
+		
+		public int remainingRollouts(int rolloutsDone) {
+			// roll outs left before the budget is exhausted; with a deadline, estimated from the roll out rate so far
+			int left = maxRollouts - rolloutsDone;
+			if (hasDeadline && (rolloutsDone > 0)) {
+				long now = System.nanoTime();
+				double rate = rolloutsDone / (double) Math.max(now - start, 1);
+				left = (int) Math.min(left, rate * Math.max(deadline - now, 0));
 			}
+			return Math.max(left, 0);
+		}
+		
+		public boolean isPastDeadline() {
+			return hasDeadline && (System.nanoTime() - deadline >= 0);
 		}
+		
+		public boolean isStopped() {
+			// true if the search has to stop now, checked by minimax_alphabeta() on every level and by ThreatSearch
+			return isPastDeadline() || isCancelled();
+		}
+		
+		public boolean isExhausted(int rolloutsDone) {
+			// the first roll out is always allowed, so that the top node is expanded and there is a move to return, 
+			// unless the search is cancelled
+			if (isCancelled())
+				return true;
+			if (rolloutsDone == 0)
+				return false;
+			return (rolloutsDone >= maxRollouts) || isPastDeadline();
+		}
+	}
 
-		public void expand()	{
-			
-			if (!expanded)	{
-				expanded = true;
-				nextMoves = new ArrayList<MCTSNode>();
-								
-				for (int indexFromParentNode = 0; indexFromParentNode < GAMESTATELENGTH; indexFromParentNode++) {
-					if (nodeGameState[indexFromParentNode] == TILE_STATUS.TILE_STATUS_EMPTY) {
-						
-						if (nodeTurn == TURN.COMPUTER_TURN) 
-							nodeGameState[indexFromParentNode] = TILE_STATUS.TILE_STATUS_COMPUTER;
-						else 
-							nodeGameState[indexFromParentNode] = TILE_STATUS.TILE_STATUS_PERSON;	
-				
-						nextMoves.add(new MCTSNode(nodeGameState,getNextTurn(nodeTurn),indexFromParentNode,levelFromTopNode+1));
-						nodeGameState[indexFromParentNode] = TILE_STATUS.TILE_STATUS_EMPTY;
-					}
-				}
+	public class CandidateSet
+	// the candidate moves of a game state: the empty tiles within NEIGHBOURDISTANCE rows and columns of a tile of 
+	// either player. nearCount[i] is the number of tiles within that distance of tile i; place() and remove() update 
+	// the (2 * NEIGHBOURDISTANCE + 1)^2 counts around a move, so keeping the set costs O(1) per move. 
+	// on an empty table every empty tile is a candidate
+	{
+		private final int[] nearCount;
+		private final int[] moves; // the moves found by collect()
+		private int tiles; // number of tiles on the table
+		private int distance; // NEIGHBOURDISTANCE at the last reset()
+		
+		public CandidateSet() {
+			nearCount = new int[GAMESTATELENGTH];
+			moves = new int[GAMESTATELENGTH];
+		}
+		
+		public CandidateSet(BitBoard state) {
+			this();
+			reset(state);
+		}
+		
+		public void reset(BitBoard state) {
+			distance = NEIGHBOURDISTANCE;
+			tiles = 0;
+			Arrays.fill(nearCount, 0);
+			for (int index = 0; index < GAMESTATELENGTH; index++) {
+				if (!state.isEmpty(index))
+					place(index);
 			}
 		}
-
-		public MCTSNode randomSelection()
+		
+		public void place(int index) {
+			update(index, 1);
+		}
+		
+		public void remove(int index) {
+			update(index, -1);
+		}
+		
+		private void update(int index, int delta) {
+			tiles += delta;
+			if (distance <= 0)
+				return;
+			int x = index % n;
+			int y = index / n;
+			int xTo = Math.min(x + distance, n - 1);
+			int yTo = Math.min(y + distance, n - 1);
+			for (int ty = Math.max(y - distance, 0); ty <= yTo; ty++) {
+				for (int tx = Math.max(x - distance, 0); tx <= xTo; tx++)
+					nearCount[ty * n + tx] += delta;
+			}
+		}
+		
+		public int getDistance() {
+			return distance;
+		}
+		
+		public boolean isNear(int index) {
+			// true if a move on the empty tile index is a candidate
+			return (distance <= 0) || (tiles == 0) || (nearCount[index] > 0);
+		}
+		
+		public int collect(BitBoard state) 
+		// stores the candidate moves of state, which this set is kept for, in getMoves() and returns their number. 
+		// if the tiles near the others are all taken, every empty tile is a candidate
 		{
-			int rand = r.nextInt(nextMoves.size());
-		    return nextMoves.get(rand);
+			int count = 0;
+			for (int index = state.nextEmpty(0); index >= 0; index = state.nextEmpty(index + 1)) {
+				if (isNear(index))
+					moves[count++] = index;
+			}
+			if (count == 0) {
+				for (int index = state.nextEmpty(0); index >= 0; index = state.nextEmpty(index + 1))
+					moves[count++] = index;
+			}
+			return count;
+		}
+		
+		public int[] getMoves() {
+			return moves;
 		}
+	}
 
+	public interface RolloutPolicy
+	// chooses the moves of a roll out simulation, see ROLLOUT_MODE. RolloutEngine.simulate() calls start() once, 
+	// then for every move choose() and played()
+	{
+		public void start(BitBoard state);
+		// state is the game state the roll out starts from
 		
-		public MCTSNode bestUCTSelection()
+		public int choose(BitBoard state, TURN turn, int[] candidates, int count, Random random);
+		// the position in candidates[0 .. count-1] of the move of turn in state
+		
+		public void played(BitBoard state, int move, TURN turn);
+		// turn has placed a tile at move in state
+	}
+	
+	public class UniformPolicy implements RolloutPolicy
+	// every candidate move is equally likely
+	{
+		@Override
+		public void start(BitBoard state) {
+		}
+		
+		@Override
+		public int choose(BitBoard state, TURN turn, int[] candidates, int count, Random random) {
+			return random.nextInt(count);
+		}
+		
+		@Override
+		public void played(BitBoard state, int move, TURN turn) {
+		}
+	}
+	
+	public class TacticalPolicy implements RolloutPolicy
+	// a one-ply minimax check before every move plays an immediate win of turn, or else blocks an immediate win of 
+	// the opponent; without either the move is uniformly random. rather than trying every candidate, the tiles 
+	// where a player may win are collected as the game goes: by winsAt() on every empty tile at the start, then by 
+	// countThreats() on each move played, as only a move of the player can make a new one. a collected tile is 
+	// confirmed by winsAt() when it is used, and dropped once it is taken
+	{
+		private final int[][] winTiles; // winTiles[0] tiles where computer may win, winTiles[1] for person
+		private final int[] winCount;
+		private final boolean[][] collected;
+		private final int[] fourTiles;
+		
+		public TacticalPolicy() {
+			winTiles = new int[2][GAMESTATELENGTH];
+			winCount = new int[2];
+			collected = new boolean[2][GAMESTATELENGTH];
+			fourTiles = new int[2];
+		}
+		
+		@Override
+		public void start(BitBoard state) {
+			for (int player = 0; player < 2; player++) {
+				for (int i = 0; i < winCount[player]; i++)
+					collected[player][winTiles[player][i]] = false;
+				winCount[player] = 0;
+			}
+			for (int index = state.nextEmpty(0); index >= 0; index = state.nextEmpty(index + 1)) {
+				if (winsAt(state, index, TURN.COMPUTER_TURN))
+					collect(0, index);
+				if (winsAt(state, index, TURN.PERSON_TURN))
+					collect(1, index);
+			}
+		}
+		
+		@Override
+		public int choose(BitBoard state, TURN turn, int[] candidates, int count, Random random) {
+			TURN opponent = (turn == TURN.COMPUTER_TURN) ? TURN.PERSON_TURN : TURN.COMPUTER_TURN;
+			int tile = findWin(state, turn);
+			if (tile < 0)
+				tile = findWin(state, opponent); // to be blocked
+			for (int i = 0; (tile >= 0) && (i < count); i++) {
+				if (candidates[i] == tile)
+					return i;
+			}
+			return random.nextInt(count);
+		}
+		
+		@Override
+		public void played(BitBoard state, int move, TURN turn) {
+			state.remove(move);
+			int threats = countThreats(state, move, turn, fourTiles);
+			state.place(move, turn);
+			for (int k = 0; k < threats; k++)
+				collect((turn == TURN.COMPUTER_TURN) ? 0 : 1, fourTiles[k]);
+		}
+		
+		private void collect(int player, int tile) {
+			if (!collected[player][tile]) {
+				collected[player][tile] = true;
+				winTiles[player][winCount[player]++] = tile;
+			}
+		}
+		
+		private int findWin(BitBoard state, TURN turn) {
+			// a collected tile where turn wins, -1 if there is none
+			int player = (turn == TURN.COMPUTER_TURN) ? 0 : 1;
+			int[] tiles = winTiles[player];
+			for (int i = winCount[player] - 1; i >= 0; i--) {
+				int tile = tiles[i];
+				if (state.isEmpty(tile) && winsAt(state, tile, turn))
+					return tile;
+				tiles[i] = tiles[--winCount[player]];
+				collected[player][tile] = false;
+			}
+			return -1;
+		}
+	}
+	
+	public class PatternPolicy implements RolloutPolicy
+	// a candidate move is chosen with a probability proportional to its weight. a window, see buildWinTables(), 
+	// holding k tiles of one player and none of the other adds PATTERNWEIGHTS[k] to the weight of each of its 
+	// tiles for that player, so that tiles extending or blocking threes and fours weigh the most. an immediate win 
+	// is always played, then a block of an immediate win of the opponent. the window counts and the weights are 
+	// updated incrementally, played() touches only the windows through the move
+	{
+		private final int[] PATTERNWEIGHTS = {0, 1, 8, 64, 4096, 4096}; // a full window ends the roll out
+		private final int WINWEIGHT = PATTERNWEIGHTS[COUNTWIN-1]; // a tile with this weight completes a window
+		private final int[] windowTiles; // windowTiles[2*w] tiles of computer, windowTiles[2*w+1] of person in window w
+		private final int[][] weights; // weights[0] for computer, weights[1] for person, indexed by tile
+		private final int[] cumulative; // running sums of the weights of the candidates, see choose()
+		
+		public PatternPolicy() {
+			windowTiles = new int[2 * winWindows];
+			weights = new int[2][GAMESTATELENGTH];
+			cumulative = new int[GAMESTATELENGTH];
+		}
+		
+		@Override
+		public void start(BitBoard state) {
+			Arrays.fill(windowTiles, 0);
+			Arrays.fill(weights[0], 0);
+			Arrays.fill(weights[1], 0);
+			for (int w = 0; w < winWindows; w++) {
+				for (int k = 0; k < COUNTWIN; k++) {
+					int index = winWindowTiles[w * COUNTWIN + k];
+					if (state.isComputer(index))
+						windowTiles[2 * w]++;
+					else if (state.isPerson(index))
+						windowTiles[2 * w + 1]++;
+				}
+				for (int player = 0; player < 2; player++) {
+					if (windowTiles[2 * w + 1 - player] == 0)
+						addWeight(w, player, PATTERNWEIGHTS[windowTiles[2 * w + player]]);
+				}
+			}
+		}
+		
+		@Override
+		public int choose(BitBoard state, TURN turn, int[] candidates, int count, Random random) {
+			int[] own = weights[(turn == TURN.COMPUTER_TURN) ? 0 : 1];
+			int[] other = weights[(turn == TURN.COMPUTER_TURN) ? 1 : 0];
+			int block = -1;
+			int total = 0;
+			for (int i = 0; i < count; i++) {
+				int index = candidates[i];
+				if (own[index] >= WINWEIGHT)
+					return i;
+				if (other[index] >= WINWEIGHT)
+					block = i;
+				total += 1 + own[index] + other[index];
+				cumulative[i] = total;
+			}
+			if (block >= 0)
+				return block;
+			
+			// the first position whose running sum exceeds a random number below total
+			int pick = random.nextInt(total);
+			int low = 0;
+			int high = count - 1;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (cumulative[middle] > pick)
+					high = middle;
+				else
+					low = middle + 1;
+			}
+			return low;
+		}
+		
+		@Override
+		public void played(BitBoard state, int move, TURN turn) {
+			int player = (turn == TURN.COMPUTER_TURN) ? 0 : 1;
+			for (int i = winCellStart[move]; i < winCellStart[move+1]; i++) {
+				int w = winEntryWindow[i];
+				int own = windowTiles[2 * w + player];
+				int other = windowTiles[2 * w + 1 - player];
+				if (other == 0)
+					addWeight(w, player, PATTERNWEIGHTS[own + 1] - PATTERNWEIGHTS[own]);
+				else if (own == 0)
+					addWeight(w, 1 - player, -PATTERNWEIGHTS[other]); // the window is blocked for the other player
+				windowTiles[2 * w + player] = own + 1;
+			}
+		}
+		
+		private void addWeight(int w, int player, int weight) {
+			int[] playerWeights = weights[player];
+			for (int k = 0; k < COUNTWIN; k++)
+				playerWeights[winWindowTiles[w * COUNTWIN + k]] += weight;
+		}
+	}
+
+	public class RolloutEngine
+	// iterative, allocation free roll out simulation. 
+	// the candidate moves are kept in the preallocated candidateTiles list; the pick of the RolloutPolicy is swapped 
+	// with the last entry of the list and dropped, and the empty tiles within NEIGHBOURDISTANCE of it are appended, 
+	// so each ply costs O(1) besides checkWinner and the policy. tilePosition[i] is the position of tile i in the list, or -1
+	{
+		private final int[] candidateTiles;
+		private final int[] tilePosition;
+		private int count; // number of tiles in candidateTiles
+		private final CandidateSet candidates;
+		private final BitBoard scratchBoard;
+		private final UniformPolicy uniformPolicy;
+		private PatternPolicy patternPolicy; // created on the first roll out with ROLLOUT_MODE = 1
+		private final TacticalPolicy tacticalPolicy;
+		private final int[] playedTiles; // the moves of the last simulate(), in order
+		private final TURN[] amafTurns; // the player of every tile marked by markAmaf(), null if unmarked
+		private final int[] amafTiles; // the marked tiles
+		private int amafCount;
+		private int plies;
+		private long rolloutNanos; // duration of the roll out of the present trial, -1 if it had none, see SearchStatistics
+		private long rolloutEndTime; // System.nanoTime() at the end of that roll out
+		private int leafLevel; // level from the top node of the node the roll out started from
+		private Random random; // random source of the search on this thread
+		
+		public RolloutEngine() {
+			candidateTiles = new int[GAMESTATELENGTH];
+			tilePosition = new int[GAMESTATELENGTH];
+			candidates = new CandidateSet();
+			scratchBoard = new BitBoard();
+			uniformPolicy = new UniformPolicy();
+			tacticalPolicy = new TacticalPolicy();
+			playedTiles = new int[GAMESTATELENGTH];
+			amafTurns = new TURN[GAMESTATELENGTH];
+			amafTiles = new int[GAMESTATELENGTH];
+			random = r;
+		}
+		
+		public void clearAmaf() {
+			for (int i = 0; i < amafCount; i++)
+				amafTurns[amafTiles[i]] = null;
+			amafCount = 0;
+		}
+		
+		public void markAmaf(int tile, TURN turn) {
+			// tile was played by turn, see RAVE_MODE
+			if (amafTurns[tile] == null)
+				amafTiles[amafCount++] = tile;
+			amafTurns[tile] = turn;
+		}
+		
+		public void markRollout(TURN firstTurn) {
+			// marks the moves of the last simulate(), where firstTurn made the first move
+			TURN turn = firstTurn;
+			for (int i = 0; i < plies; i++) {
+				markAmaf(playedTiles[i], turn);
+				turn = (turn == TURN.COMPUTER_TURN) ? TURN.PERSON_TURN : TURN.COMPUTER_TURN;
+			}
+		}
+		
+		public TURN getAmafTurn(int tile) {
+			return amafTurns[tile];
+		}
+		
+		public RolloutPolicy getPolicy() {
+			// the policy of ROLLOUT_MODE
+			if (ROLLOUT_MODE == 1) {
+				if (patternPolicy == null)
+					patternPolicy = new PatternPolicy();
+				return patternPolicy;
+			}
+			if (ROLLOUT_MODE == 2)
+				return tacticalPolicy;
+			return uniformPolicy;
+		}
+		
+		public CandidateSet getCandidates() {
+			// a candidate set the caller may reset and use between roll outs
+			return candidates;
+		}
+		
+		public Random getRandom() {
+			return random;
+		}
+		
+		public void setRandom(Random random) {
+			// null restores the random source of the GameAlgorithm
+			this.random = (random == null) ? r : random;
+		}
+		
+		public BitBoard getScratchBoard() {
+			// a game state the caller may copy into and simulate on
+			return scratchBoard;
+		}
+		
+		public int getPlies() {
+			// number of moves played by the last simulate()
+			return plies;
+		}
+		
+		public void recordRollout(long startTime, int level) {
+			// the roll out of the present trial started at startTime from a node of the given level and has just ended
+			rolloutEndTime = System.nanoTime();
+			rolloutNanos = rolloutEndTime - startTime;
+			leafLevel = level;
+		}
+		
+		public TURN simulate(BitBoard state, TURN myTurn, int previousMove) 
+		// play of the candidate moves, chosen by the RolloutPolicy, from state, where previousMove was the last move 
+		// and it is myTurn to move. returns the winner or GAME_DRAW; state is left at the end of the game
+		{
+			RolloutPolicy policy = getPolicy();
+			policy.start(state);
+			candidates.reset(state);
+			int distance = candidates.getDistance();
+			Arrays.fill(tilePosition, -1);
+			count = 0;
+			for (int index = state.nextEmpty(0); index >= 0; index = state.nextEmpty(index + 1)) {
+				if (candidates.isNear(index))
+					addCandidate(index);
+			}
+			
+			plies = 0;
+			int move = previousMove;
+			while (true) {
+				if (checkWinner(state, move)) // if this state is terminal, then myTurn loses. So the other turn wins
+					return (myTurn == TURN.COMPUTER_TURN) ? TURN.PERSON_TURN : TURN.COMPUTER_TURN;
+				if (count == 0) {
+					// the tiles near the others are all taken, the rest of the table may still be empty
+					for (int index = state.nextEmpty(0); index >= 0; index = state.nextEmpty(index + 1))
+						addCandidate(index);
+					if (count == 0)
+						return TURN.GAME_DRAW;
+				}
+				
+				plies++;
+				
+				int pick = policy.choose(state, myTurn, candidateTiles, count, random);
+				move = candidateTiles[pick];
+				playedTiles[plies - 1] = move;
+				candidateTiles[pick] = candidateTiles[--count];
+				tilePosition[candidateTiles[pick]] = pick;
+				tilePosition[move] = -1;
+				
+				state.place(move, myTurn);
+				policy.played(state, move, myTurn);
+				if (distance > 0) {
+					int x = move % n;
+					int y = move / n;
+					int xTo = Math.min(x + distance, n - 1);
+					int yTo = Math.min(y + distance, n - 1);
+					for (int ty = Math.max(y - distance, 0); ty <= yTo; ty++) {
+						for (int tx = Math.max(x - distance, 0); tx <= xTo; tx++) {
+							int index = ty * n + tx;
+							if ((tilePosition[index] < 0) && state.isEmpty(index))
+								addCandidate(index);
+						}
+					}
+				}
+				myTurn = (myTurn == TURN.COMPUTER_TURN) ? TURN.PERSON_TURN : TURN.COMPUTER_TURN;
+			}
+		}
+		
+		private void addCandidate(int index) {
+			tilePosition[index] = count;
+			candidateTiles[count++] = index;
+		}
+	}
+	
+	public class ThreatSearch
+	// threat-space search for a victory by continuous fours (VCF). the attacker only plays moves that make a four, 
+	// i.e. an immediate win on the next move, so that every reply of the defender is forced; the attacker wins with 
+	// a move that makes two fours at once. a forced reply that makes a four of the defender must be answered by a 
+	// four that blocks it. searching only these moves reaches VCFDEPTH attacker moves deep where full width minimax 
+	// cannot go beyond a few levels. game states that failed are remembered by their zobristHash() for the rest of 
+	// the search. a search given a SearchBudget stops at its deadline or when it is cancelled, and finds nothing. 
+	// every thread gets its own instance, see threatSearch
+	{
+		private final int[][] plyMoves; // candidate fours of every attacker move of the line
+		private final int[] line; // the attacker moves of the current line
+		private final int[] fourTiles; // the tiles where a four wins
+		private final int[] forced; // the tiles placed by isDefence()
+		private final HashSet<Long> failed;
+		private final CandidateSet candidates;
+		private int nodes;
+		private int maxNodes;
+		private SearchBudget budget; // deadline and cancellation of the present search, null if there is none
+		private boolean stopped; // true if the present search reached the deadline of budget or was cancelled
+		
+		public ThreatSearch() {
+			// every attacker move and its reply take two tiles, so no line is longer than this
+			int maxPlies = GAMESTATELENGTH / 2 + 1;
+			plyMoves = new int[maxPlies][GAMESTATELENGTH];
+			line = new int[maxPlies];
+			fourTiles = new int[2];
+			forced = new int[GAMESTATELENGTH];
+			failed = new HashSet<Long>();
+			candidates = new CandidateSet();
+		}
+		
+		public int findVCF(BitBoard state, TURN attacker, int maxNodes) {
+			return findVCF(state, attacker, maxNodes, null);
+		}
+		
+		public int findVCF(BitBoard state, TURN attacker, int maxNodes, SearchBudget budget) 
+		// first move of a VCF for attacker, who is to move in state, or -1 if there is none within VCFDEPTH attacker 
+		// moves and maxNodes visited game states, or if the search is stopped by budget (may be null) first, 
+		// see isStopped() and isComplete(). an immediate win counts as a VCF. state is unchanged on return
+		{
+			TURN defender = (attacker == TURN.COMPUTER_TURN) ? TURN.PERSON_TURN : TURN.COMPUTER_TURN;
+			failed.clear();
+			nodes = 0;
+			this.maxNodes = maxNodes;
+			this.budget = budget;
+			stopped = false;
+			if (searchVCF(state, attacker, defender, 0, state.zobristHash()))
+				return line[0];
+			return -1;
+		}
+		
+		public int findDefences(BitBoard state, TURN defender, int maxNodes, SearchBudget budget, int[] defences) 
+		// stores in defences the candidate moves of defender, who is to move in state, after which the opponent 
+		// has no VCF and returns their number, see isDefence(). if the search is stopped by budget no defence is 
+		// returned, see isStopped(). state is unchanged on return
+		{
+			TURN attacker = (defender == TURN.COMPUTER_TURN) ? TURN.PERSON_TURN : TURN.COMPUTER_TURN;
+			candidates.reset(state);
+			int candidateCount = candidates.collect(state);
+			int[] moves = candidates.getMoves();
+			int count = 0;
+			for (int i = 0; i < candidateCount; i++) {
+				int index = moves[i];
+				state.place(index, defender);
+				if (checkWinner(state, index) || isDefence(state, attacker, defender, maxNodes, budget))
+					defences[count++] = index;
+				state.remove(index);
+				if (stopped)
+					return 0;
+			}
+			return count;
+		}
+		
+		private boolean isDefence(BitBoard state, TURN attacker, TURN defender, int maxNodes, SearchBudget budget) 
+		// true if attacker, who is to move in state after a move of defender, is proven to have no VCF.
+		// a four of defender only delays the attack: attacker blocks it and, if that block is a four, 
+		// defender blocks back, and the check goes on from there. a free move of defender after the block is 
+		// taken as a pass, which can only help attacker. a findVCF() that reaches maxNodes proves nothing. 
+		// state is unchanged on return
+		{
+			int placed = 0;
+			boolean defended;
+			while (true) {
+				if (findWins(state, attacker, fourTiles) > 0) {
+					defended = false;
+					break;
+				}
+				int fours = findWins(state, defender, fourTiles);
+				if (fours >= 2) {
+					defended = true; // attacker can only block one of them
+					break;
+				}
+				if (fours == 0) {
+					defended = (findVCF(state, attacker, maxNodes, budget) < 0) && isComplete();
+					break;
+				}
+				
+				int block = fourTiles[0];
+				state.place(block, attacker);
+				forced[placed++] = block;
+				int counters = findWins(state, attacker, fourTiles);
+				if (counters >= 2) {
+					defended = false;
+					break;
+				}
+				if (counters == 1) {
+					// the block is a four, the reply of defender is forced
+					state.place(fourTiles[0], defender);
+					forced[placed++] = fourTiles[0];
+				}
+			}
+			while (placed > 0)
+				state.remove(forced[--placed]);
+			return defended;
+		}
+		
+		private int findWins(BitBoard state, TURN turn, int[] tiles) {
+			// number of empty tiles, up to 2, where turn wins at once; the tiles are stored in tiles
+			int count = 0;
+			for (int index = state.nextEmpty(0); (index >= 0) && (count < 2); index = state.nextEmpty(index + 1)) {
+				if (winsAt(state, index, turn))
+					tiles[count++] = index;
+			}
+			return count;
+		}
+		
+		public boolean isStopped() {
+			// true if the last findVCF() or findDefences() was stopped by its budget, its result proves nothing
+			return stopped;
+		}
+		
+		public boolean isComplete() {
+			// true if the last findVCF() searched every line within VCFDEPTH attacker moves, so that -1 proves 
+			// there is no such VCF; false if it reached its maxNodes or was stopped
+			return !stopped && (nodes <= maxNodes);
+		}
+		
+		private boolean searchVCF(BitBoard state, TURN attacker, TURN defender, int ply, long hash) 
+		// true if attacker, who is to move in state, has a VCF within VCFDEPTH - ply moves; the moves are kept 
+		// in line[ply ..]. hash is the zobristHash() of state. state is unchanged on return
+		{
+			if (++nodes > maxNodes)
+				return false;
+			if ((budget != null) && budget.isStopped()) {
+				stopped = true;
+				return false;
+			}
+			
+			int threats = 0;
+			int block = -1;
+			for (int index = state.nextEmpty(0); index >= 0; index = state.nextEmpty(index + 1)) {
+				if (winsAt(state, index, attacker)) {
+					line[ply] = index;
+					return true;
+				}
+				if ((threats < 2) && winsAt(state, index, defender)) {
+					threats++;
+					block = index;
+				}
+			}
+			if ((ply >= VCFDEPTH) || (ply >= line.length - 1) || (threats >= 2) || failed.contains(hash))
+				return false;
+			
+			// the attacker has no immediate win, so countThreats() sees all the fours a move makes
+			int[] moves = plyMoves[ply];
+			int count = 0;
+			if (threats == 1) {
+				// the four of the defender must be blocked, by a move that is a four itself
+				if (countThreats(state, block, attacker, null) > 0)
+					moves[count++] = block;
+			}
+			else {
+				for (int index = state.nextEmpty(0); index >= 0; index = state.nextEmpty(index + 1)) {
+					if (countThreats(state, index, attacker, null) > 0)
+						moves[count++] = index;
+				}
+			}
+			
+			for (int i = 0; i < count; i++) {
+				int move = moves[i];
+				line[ply] = move;
+				if (countThreats(state, move, attacker, fourTiles) >= 2)
+					return true; // the defender has no immediate win and can only block one of the fours
+				
+				int reply = fourTiles[0];
+				state.place(move, attacker);
+				state.place(reply, defender);
+				boolean won = !checkWinner(state, reply) && 
+						searchVCF(state, attacker, defender, ply + 1, hash ^ zobristKey(move, attacker) ^ zobristKey(reply, defender));
+				state.remove(reply);
+				state.remove(move);
+				if (won)
+					return true;
+				if ((nodes > maxNodes) || stopped)
+					return false;
+			}
+			failed.add(hash);
+			return false;
+		}
+	}
+
+	public class MCTSNode
+	{
+		private volatile ArrayList<MCTSNode> nextMoves;
+		private int[] nextMoveIndices; 
+		// nextMoveIndices[i] is the move that leads to nextMoves.get(i). with TRANSPOSITION_MODE = 1 a child may be 
+		// shared with other parent nodes, and its indexFromParentNode is only the move from the parent that created it.
+		// with WIDENING_MODE = 1 nextMoveIndices holds all candidate moves, and nextMoves the children created so far
+		private BitBoard nodeGameState;
+		private long positionHash; // BitBoard.zobristHash() of the game state of the present node
+		private TURN nodeTurn;
+		// the statistics are not private so that the field updaters of GameAlgorithm can reach them
+		volatile int score;
+		volatile int timesVisited;
+		volatile int virtualLosses; // number of tree parallel threads whose current path goes through this node
+		volatile int expandState; // 0 means not expanded, 1 means being expanded, 2 means expanded
+		volatile int amafScore; // AMAF statistics of the move to the present node, see RAVE_MODE
+		volatile int amafVisits;
+		private volatile TURN provenWinner; // winner with best play from the present node, null if not proven, see SOLVER_MODE
+		private volatile int provenLosses; // number of child nodes that are proven losses for nodeTurn
+		private int indexFromParentNode;
+		private int levelFromTopNode;
+		private int simulationDepth;
+
+		public MCTSNode(BitBoard state, TURN myTurn, int indexMove, int levelCount)
+		{
+			this(myTurn, indexMove, levelCount);
+			nodeGameState = new BitBoard(state);
+			positionHash = state.zobristHash();
+		}
+		
+		public MCTSNode(TURN myTurn, int indexMove, int levelCount)
+		// node without a game state of its own, used below the root node when TREE_MODE = 2
+		{
+			nodeGameState = null;
+		   	nodeTurn = myTurn; // nodeTurn is the TURN to make a move given the state = nodeGameState. nodeGameState does not include that move
+		   	timesVisited = 0;
+		   	score = 0;
+		   	nextMoves = null;
+		   	nextMoveIndices = null;
+		   	expandState = 0;
+		   	virtualLosses = 0;
+		   	indexFromParentNode = indexMove; // the present node is reached from its parent node by taking a move at indexFromParentNode
+		   	levelFromTopNode = levelCount; // the present node is level levelFromTopNode from the root node
+		   	// simulationDepth is only used when SEARCH_MODE = 2; 
+		   	simulationDepth = 0; // initially the present node has not started roll out simulation yet
+		   	searchStatistics.addNodes(1);
+		}
+		
+		public void printGameState(BitBoard state) {
+			for (int i = 0; i < n; i++) {
+				for (int j = 0; j < n; j++) {
+					int index = i*n+j;
+					if (state.isEmpty(index))
+						System.out.format( "-1 ");
+					else if (state.isPerson(index))
+						System.out.format( " 0 ");
+					else 
+						System.out.format( " 1 ");
+				}
+				System.out.println("");
+			}
+			System.out.println("");
+		}
+
+		public void printAllNodes() {
+			
+			for (int index = 0; (nodeGameState != null) && (index < GAMESTATELENGTH); index++) {
+				if (nodeGameState.isEmpty(index))
+					System.out.format( "-1 ");
+				else if (nodeGameState.isPerson(index))
+					System.out.format( " 0 ");
+				else 
+					System.out.format( " 1 ");
+			}
+			System.out.println(" turn: " + nodeTurn + " time: " + timesVisited + " score: " + score);
+			if (!isLeaf()) {
+				for (int i = 0; i < nextMoves.size(); i++) 
+					nextMoves.get(i).printAllNodes();
+			}
+		}
+
+		public void printAnNode(BitBoard state, int mode, int num_sim, int index) {
+			
+			boolean matched = (nodeGameState != null) && nodeGameState.sameAs(state); // find the node whose game state exactly matches the given state
+			if (matched == true) {
+				if (timesVisited>0)
+//					System.out.println(" turn: " + nodeTurn + " time: " + timesVisited + " score: " + score + " float score = " +((float) score) / ((float) timesVisited));
+					System.out.println("v"+ index+"(" + num_sim + ")=" + timesVisited + "; s"+index+"(" + num_sim + ")=" +((float) score) / ((float) timesVisited) +";");
+				if ((mode == 1) && (!isLeaf())) { // print all its child nodes if any, if mode == 1
+					for (int i = 0; i < nextMoves.size(); i++) {
+						MCTSNode node = nextMoves.get(i);
+						System.out.println("v(" +(i+1)+ ")="+ node.timesVisited + "; s(" +(i+1)+")=" + node.score +";");
+					}
+						
+				}
+			}
+			
+			if (!isLeaf()) {
+				for (int i = 0; i < nextMoves.size(); i++) 
+					nextMoves.get(i).printAnNode(state, mode, num_sim, index);
+			}
+		}
+
+		public BitBoard getGameState() {
+			// null for the nodes below the root node when TREE_MODE = 2
+			return nodeGameState;
+		}
+		
+		public int getSimulationDepth() {
+			return simulationDepth;
+		}
+
+		public void resetSimulationDepth() {
+			simulationDepth = 0;
+		}
+
+		public boolean isLeaf()
+		{
+			return (nextMoves == null || nextMoves.isEmpty());
+		}
+
+		public void incScore() {
+			SCORE.incrementAndGet(this);
+		}
+		   
+		public void decScore()
+		{
+			SCORE.decrementAndGet(this);
+		}   
+		   
+		public void visit()
+		{
+			TIMESVISITED.incrementAndGet(this);
+		}
+		
+		public void addVirtualLoss(int count) {
+			VIRTUALLOSSES.addAndGet(this, count);
+		}
+		
+		public void addAmafResult(TURN result) {
+			AMAFVISITS.incrementAndGet(this);
+			if (result == TURN.COMPUTER_TURN)
+				AMAFSCORE.incrementAndGet(this);
+			else if (result == TURN.PERSON_TURN)
+				AMAFSCORE.decrementAndGet(this);
+		}
+
+		public int getTimesVisited()
+		{
+			return timesVisited;
+		}
+
+		public int getScore()
+		{
+			return score;
+		}
+		
+		public int getindexFromParentNode() 
+		{
+			return indexFromParentNode;
+		}
+		
+		public TURN getProvenWinner() {
+			return provenWinner;
+		}
+		
+		private void updateProof() 
+		// the proof of the present node from its child nodes, see SOLVER_MODE
+		{
+			ArrayList<MCTSNode> moves = nextMoves;
+			if (moves == null)
+				return;
+			TURN opponent = getNextTurn(nodeTurn);
+			int losses = 0;
+			for (int i = 0; i < moves.size(); i++) {
+				TURN winner = moves.get(i).provenWinner;
+				if (winner == nodeTurn) {
+					provenWinner = nodeTurn;
+					return;
+				}
+				if (winner == opponent)
+					losses++;
+			}
+			provenLosses = losses;
+			if (losses == nextMoveIndices.length)
+				provenWinner = opponent;
+		}
+		
+		public int provenMove() {
+			// the move of a child node that is a proven win of the computer, if the present node is one; otherwise -1
+			if ((provenWinner != TURN.COMPUTER_TURN) || (nodeTurn != TURN.COMPUTER_TURN))
+				return -1;
+			for (int i = 0; i < nextMoves.size(); i++) {
+				if (nextMoves.get(i).provenWinner == TURN.COMPUTER_TURN)
+					return nextMoveIndices[i];
+			}
+			return -1;
+		}
+		
+		public MCTSNode findChild(int indexMove) {
+			// the child node reached by the move at indexMove, null if there is none
+			for (int i = 0; (nextMoves != null) && (i < nextMoves.size()); i++) {
+				if (nextMoveIndices[i] == indexMove)
+					return nextMoves.get(i);
+			}
+			return null;
+		}
+		
+		public long getPositionHash() {
+			return positionHash;
+		}
+		
+		public void promoteToTop(BitBoard state) 
+		// makes the present node the top node of its subtree; state is its game state.
+		// the nodes of the subtree are stored again in the transposition table, which must have been cleared
+		{
+			if (nodeGameState == null)
+				nodeGameState = new BitBoard(state);
+			shiftLevels(levelFromTopNode);
+		}
+		
+		private void shiftLevels(int levels) {
+			levelFromTopNode -= levels;
+			if (transpositionTable != null)
+				transpositionTable.findOrStore(this);
+			for (int i = 0; (nextMoves != null) && (i < nextMoves.size()); i++) {
+				// in a DAG a node is reached once per parent node, but it is only shifted the first time:
+				// all paths to a node have the same length, so a shifted child is one level below the present node
+				MCTSNode node = nextMoves.get(i);
+				if (node.levelFromTopNode != levelFromTopNode + 1)
+					node.shiftLevels(levels);
+			}
+		}
+		
+		public TURN getTurn() {
+			return nodeTurn;
+		}
+
+		public TURN getNextTurn(TURN turn) {
+			if (turn == TURN.COMPUTER_TURN)	
+				return TURN.PERSON_TURN;
+			else if (turn == TURN.PERSON_TURN)
+				return TURN.COMPUTER_TURN;
+			else { 
+				System.out.println("error in getNextTurn input");
+				return TURN.GAME_RESET;
+			}
+		}
+
+		public void expand()	{
+			expand(nodeGameState);
+		}
+		
+		public void expand(BitBoard state)	{
+			// state is the game state of the present node
+			
+			// only the thread that claims the node expands it; the children are published all at once,
+			// until then other threads see a leaf. state is not changed, because other threads may read it
+			if ((expandState == 0) && EXPANDSTATE.compareAndSet(this, 0, 1))	{
+				RolloutEngine engine = rolloutEngine.get();
+				CandidateSet candidates = engine.getCandidates();
+				candidates.reset(state);
+				int[] indices = Arrays.copyOf(candidates.getMoves(), candidates.collect(state));
+				if (WIDENING_MODE == 1) {
+					BitBoard board = engine.getScratchBoard();
+					board.copyFrom(state);
+					orderByPrior(board, nodeTurn, indices);
+				}
+				
+				int limit = childLimit(indices.length);
+				ArrayList<MCTSNode> moves = new ArrayList<MCTSNode>(limit);
+				for (int i = 0; i < limit; i++)
+					moves.add(createChild(indices[i], state));
+				nextMoveIndices = indices;
+				nextMoves = moves;
+				expandState = 2;
+			}
+		}
+		
+		private void widen(BitBoard state) 
+		// creates the next child nodes, in the order of nextMoveIndices, until there are childLimit() of them. 
+		// state is the game state of the present node. a longer copy of nextMoves replaces the list, so that 
+		// other threads of a tree parallel search keep reading a consistent one
+		{
+			int limit = childLimit(nextMoveIndices.length);
+			if (nextMoves.size() >= limit)
+				return;
+			synchronized (this) {
+				ArrayList<MCTSNode> moves = new ArrayList<MCTSNode>(limit);
+				moves.addAll(nextMoves);
+				while (moves.size() < limit)
+					moves.add(createChild(nextMoveIndices[moves.size()], state));
+				nextMoves = moves;
+			}
+		}
+		
+		private int childLimit(int count) {
+			// number of child nodes the present node may have, out of count candidate moves
+			if ((WIDENING_MODE == 0) || (levelFromTopNode == 0) || (SEARCH_MODE == 0))
+				return count;
+			int limit = 1 + (int) (WIDENINGCOEFFICIENT * Math.pow(timesVisited, WIDENINGEXPONENT));
+			// child nodes that are proven losses are not selected, so they do not count
+			return Math.min(limit + provenLosses, count);
+		}
+		
+		private MCTSNode createChild(int indexMove, BitBoard state) {
+			// the child node reached by the move at indexMove from state, the game state of the present node
+			long hash = positionHash ^ zobristKey(indexMove, nodeTurn);
+			TranspositionTable table = transpositionTable;
+			MCTSNode node = (table == null) ? null : table.find(hash);
+			if (node == null) {
+				// the game state has not been reached by another move order
+				node = new MCTSNode(getNextTurn(nodeTurn),indexMove,levelFromTopNode+1);
+				node.positionHash = hash;
+				if (TREE_MODE != 2) {
+					node.nodeGameState = new BitBoard(state);
+					node.nodeGameState.place(indexMove, nodeTurn);
+				}
+				if (table != null)
+					node = table.findOrStore(node);
+			}
+			return node;
+		}
+		
+		private BitBoard enterChild(int i, BitBoard state) 
+		// returns the game state of the child node nextMoves.get(i), which is state with the child's move placed 
+		// if the child has no game state of its own. leaveChild() must be called afterwards
+		{
+			MCTSNode node = nextMoves.get(i);
+			if (node.nodeGameState != null)
+				return node.nodeGameState;
+			state.place(nextMoveIndices[i], nodeTurn);
+			return state;
+		}
+		
+		private void leaveChild(int i, BitBoard state) {
+			if (nextMoves.get(i).nodeGameState == null)
+				state.remove(nextMoveIndices[i]);
+		}
+
+		public MCTSNode randomSelection()
+		{
+		    return nextMoves.get(randomSelectionIndex());
+		}
+		
+		private int randomSelectionIndex()
+		{
+			return rolloutEngine.get().getRandom().nextInt(nextMoves.size());
+		}
+
+		
+		public MCTSNode bestUCTSelection()
+		{
+		    return nextMoves.get(bestUCTSelectionIndex());
+		}
+		
+		private int bestUCTSelectionIndex()
+		// the position in nextMoves of the child node with the best UCT value
+		{
+		    int maxIndex = 0;
+
+		    int turn;
+			if (getTurn() == TURN.COMPUTER_TURN) 
+				turn = 1;
+			else 
+				turn = -1;
+		      
+			//the randomizer is a tiny random number added for tie-breaking
+			float bias, randomizer, biasedScore = 0, nodeScore;
+		    float max = -Float.MAX_VALUE * turn;
+		    float C = 1;
+		    Random random = rolloutEngine.get().getRandom();
+		    boolean virtualLoss = sharedTreeSearch;
+		    TURN opponent = getNextTurn(nodeTurn);
+		    for (int i = 0; i < nextMoves.size(); i++) {
+		    	MCTSNode node = nextMoves.get(i);
+		    	
+		    	if ((SOLVER_MODE == 1) && (node.provenWinner == opponent))
+		    		continue; // a proven loss for the player to move here
+		    	
+        		if ((searchMode2Status == SEARCHMODE2STATUS.SOMEDEATH) && (levelFromTopNode == 0)) {
+        			// do not bother to select any node that is not in the list of minimax4Moves
+        			boolean found = false;
+        			int move = nextMoveIndices[i];
+        			for (int j=0; j<minimax4K; j++) {
+        				if (move == minimax4Moves[j]) 
+        					found = true;
+        			}
+        			if (found == false)
+        				continue; 
+        		}    		        			
+		    	
+		        int nodeVisits = node.getTimesVisited();
+		        int nodeTotal = node.getScore();
+		        if (virtualLoss) {
+		        	// count the paths of other threads through node as lost visits for the player to move here
+		        	int losses = node.virtualLosses * VIRTUALLOSS;
+		        	nodeVisits += losses;
+		        	nodeTotal -= losses * turn;
+		        }
+		    	
+		        nodeScore = (float) nodeTotal / ((float) (nodeVisits + Float.MIN_VALUE));
+		        if ((RAVE_MODE != 0) && (node.amafVisits > 0))
+		        	nodeScore = raveScore(nodeScore, nodeVisits, node.amafScore, node.amafVisits);
+		        if (this.getTimesVisited() == 0)
+		        	bias = 0;
+		        else
+		        	bias = 2 * C * (float) (Math.sqrt(Math.log((float) this.getTimesVisited()) / ((float) nodeVisits + Float.MIN_VALUE)));
+		        randomizer = Float.MIN_VALUE * random.nextInt(GAMESTATELENGTH * GAMESTATELENGTH);
+		        biasedScore = nodeScore + randomizer + (bias * turn);
+		       		        
+		        if (biasedScore * turn > max * turn) {
+		        	max = biasedScore;
+		            maxIndex = i;
+		        }
+		    }
+		      		    
+		    return maxIndex;
+		}
+    
+		private float raveScore(float score, int visits, int amafScore, int amafVisits) {
+			// the blend of the average score and the AMAF average, see RAVE_MODE
+			float beta;
+			if (RAVE_MODE == 1)
+				beta = (float) Math.sqrt(RAVEEQUIVALENCE / (3.0 * visits + RAVEEQUIVALENCE));
+			else
+				beta = amafVisits / (visits + amafVisits + 4 * RAVEBIAS * RAVEBIAS * visits * (float) amafVisits);
+			return (1 - beta) * score + beta * amafScore / amafVisits;
+		}
+		
+		private void updateAmaf(int child, boolean rolledOut, TURN result) 
+		// AMAF update after a trial through the present node, see RAVE_MODE. the moves played after the present node 
+		// are marked in the RolloutEngine, the deepest first: the roll out, if the trial ended here, or else the move 
+		// to the child node nextMoves.get(child) that the trial went through. every child node whose move was played 
+		// by nodeTurn gets result
+		{
+			RolloutEngine engine = rolloutEngine.get();
+			if (child < 0) {
+				engine.clearAmaf();
+				if (rolledOut)
+					engine.markRollout(nodeTurn);
+			}
+			else
+				engine.markAmaf(nextMoveIndices[child], nodeTurn);
+			
+			ArrayList<MCTSNode> moves = nextMoves;
+			for (int i = 0; (moves != null) && (i < moves.size()); i++) {
+				if (engine.getAmafTurn(nextMoveIndices[i]) == nodeTurn)
+					moves.get(i).addAmafResult(result);
+			}
+		}
+		
+		public TURN simulateFrom(BitBoard state, TURN myTurn, int previousMove) 
+		// simulation from state and it is myTurn to move 
+		{
+			RolloutEngine engine = rolloutEngine.get();
+			long startTime = System.nanoTime();
+			TURN result = engine.simulate(state, myTurn, previousMove);
+			engine.recordRollout(startTime, simulationDepth);
+			simulationDepth += engine.getPlies();
+			return result;
+		}
+ 
+		private TURN runTrial(BitBoard state)
+		// state is the game state of the present node and is unchanged on return
+		{
+			TURN rolloutResult = TURN.GAME_DRAW;
+			int child = -1; // position in nextMoves of the child node the trial went through
+			boolean rolledOut = false;
+				
+			if ((SOLVER_MODE == 1) && (provenWinner != null))
+				rolloutResult = provenWinner; // nothing below the present node needs to be searched
+			else if (checkWinner(state, indexFromParentNode)) {
+	        	rolloutResult = getNextTurn(nodeTurn); 
+	        	if (SOLVER_MODE == 1)
+	        		provenWinner = rolloutResult;
+			}
+	        else {
+	        	if (levelFromTopNode < NUMTREELEVEL_MCTS)
+	        		expand(state);
+
+	        	if ((timesVisited == 0) || (isLeaf())) {		    	  
+			      	        		
+	        		BitBoard s = rolloutEngine.get().getScratchBoard();
+	        		s.copyFrom(state);
+  					
+	        		simulationDepth = levelFromTopNode; 
+	        		// simulationDepth is counted from Top Node, not from the Leaf Node
+	        		if ((THREAT_MODE == 2) && (threatSearch.get().findVCF(s, nodeTurn, VCFLEAFNODES) >= 0))
+	        			rolloutResult = nodeTurn; // the player to move wins by continuous fours, no roll out is needed
+	        		else {
+	        			rolloutResult = simulateFrom(s, nodeTurn, indexFromParentNode);
+	        			rolledOut = true;
+	        		}
+  					
+	        		if ( (simulationDepth <= NUMSIMULATIONDEPTH) && (SEARCH_MODE == 2) && (searchMode2Status == SEARCHMODE2STATUS.NOTMET) ){
+	        			searchMode2Status = SEARCHMODE2STATUS.MET;
+	        		}
+	        	}		      
+	        	else {	  			  				
+	        		if (nextMoves.size() < nextMoveIndices.length)
+	        			widen(state);
+	        		// here one can choose to use random node selection or best UCT node selection
+	        		int i = -1;
+	        		if (NODE_SELECTION_MODE == 0)
+	        			i = randomSelectionIndex(); 
+	        		else if (NODE_SELECTION_MODE == 1)
+	        			i = bestUCTSelectionIndex();
+	        		if (i >= 0) {
+	        			MCTSNode node = nextMoves.get(i);
+	        			boolean virtualLoss = sharedTreeSearch;
+	        			if (virtualLoss)
+	        				node.addVirtualLoss(1);
+	        			rolloutResult = node.runTrial(enterChild(i, state));
+	        			leaveChild(i, state);
+	        			if (virtualLoss)
+	        				node.addVirtualLoss(-1);
+	        			child = i;
+	        			if (SOLVER_MODE == 1)
+	        				updateProof();
+	        		}
+	        	}
+	        }
+	        
+	        if (RAVE_MODE != 0)
+	        	updateAmaf(child, rolledOut, rolloutResult);
+		    visit();
+
+		    if (rolloutResult != TURN.GAME_DRAW) {
+		    	if (rolloutResult == TURN.COMPUTER_TURN) 
+		    		incScore();
+		    	else if (rolloutResult == TURN.PERSON_TURN)
+		    		decScore();
+		    }		  
+	      
+		    return rolloutResult;
+		}
+		
+		public int minimax_alphabeta(BitBoard state) 
+		// minimax search from the top node down MINIMAXDEPTH levels, see alphaBeta(). 
+		// a winning move on level 1 is returned with the status WIN; otherwise the level 1 moves of the best value 
+		// are kept in minimax4Moves. values are 1 for computer win, 0 for no decision and -1 for computer loss.
+		// state is unchanged on return. every call is counted in the SearchStatistics and is a TacticalCheckEvent
+		{
+			TacticalCheckEvent event = new TacticalCheckEvent();
+			event.begin();
+			long startTime = System.nanoTime();
+			int move = alphaBetaLevel1(state);
+			searchStatistics.addMinimax(System.nanoTime() - startTime);
+			event.end();
+			if (event.shouldCommit()) {
+				event.check = "minimax";
+				event.move = move;
+				event.status = searchMode2Status.name();
+				event.commit();
+			}
+			return move;
+		}
+		
+		private int alphaBetaLevel1(BitBoard state) 
+		// the search of minimax_alphabeta()
+		{
+			int minimaxValue1, minimaxValue2;
+			int move = -1;
+			int tmpValue = 1;
+			
+			// if a winning move is found on level 1 for computer, then no need to further search. 
+			// the lowest one is returned, as a search of the level 1 moves in order would find it
+			for (int i1 = state.nextEmpty(0); i1 >= 0; i1 = state.nextEmpty(i1 + 1)) {
+				if (winsAt(state, i1, TURN.COMPUTER_TURN)) {
+					searchMode2Status = SEARCHMODE2STATUS.WIN;
+					return i1;
+				}
+			}
+
+			// the level 1 moves are the candidate moves, evaluated independently, by fork-join tasks if NUMTHREADS > 1
+			CandidateSet candidates = new CandidateSet(state);
+			int count1 = candidates.collect(state);
+			int[] moves1 = Arrays.copyOf(candidates.getMoves(), count1);
+			int[] values1 = new int[count1];
+			AtomicBoolean cancelled = new AtomicBoolean(false);
+			if (NUMTHREADS > 1)
+				prepareMinimaxPool().invoke(new MinimaxTask(state, moves1, values1, 0, count1, cancelled));
+			else
+				evaluateLevel1(new BitBoard(state), moves1, values1, 0, count1, cancelled);
+			if (cancelled.get()) {
+				// out of time: the search cannot be classified, let MCTS return its best move so far
+				searchMode2Status = SEARCHMODE2STATUS.NODEATHORALLDEATH;
+				return -1;
+			}
+
+			minimaxValue1 = -1; 
+			minimax4K = 0; // minimax4Moves is rebuilt on every call
+			// initially, assume LOSS for computer on level 1
+			for (int j = 0; j < count1; j++) {
+				int i1 = moves1[j];
+				minimaxValue2 = values1[j];
+
+				if (minimaxValue1 < minimaxValue2) {
+					// minimaxValue1 of a level 1 node records the max of minimaxValue2 of all level 2 nodes under that level 1 node
+					// because the level 1 node is for computer to move and thus to choose max
+					minimaxValue1 = minimaxValue2;
+					// if a new max is found for minimaxValue1, then reset minimax4K and minimax4Moves
+					move = i1;
+					minimax4Moves[0] = move;
+					minimax4K = 1;
+				}
+				else if (minimaxValue1 == minimaxValue2) {
+					// if the current minimaxValue2 is as good as the recorded minimaxValue1, then add the current move to minimax4Moves
+					minimax4Moves[minimax4K] = i1;
+					minimax4K++;					
+				}
+				
+				if (tmpValue > minimaxValue2) // tmpValue is to store the min of minimaxValue2
+					tmpValue = minimaxValue2; 
+
+			}							
+
+			// if (tmpValue > -1) then there is no sudden-death. In this case, continue MCTS (return -1).
+			// else if (tmpValue ==-1) and (minimaxValue1 == -1), then every move leads to sudden-death. In this case, every move is a bad move. May continue MCTS (return -2).
+			// otherwise, there is some sudden-death, but it can be avoided by taking the correct move. In this case, return move obtained in the minimax search.
+
+			if (tmpValue > -1) 
+				move = -1; // no sudden-death within MINIMAXDEPTH steps
+			else if (minimaxValue1 == -1)
+				move = -2;	// the situation is hopeless, all moves lead to sudden-death
+			
+			if ((move == -1) || (move ==-2)) 
+				searchMode2Status = SEARCHMODE2STATUS.NODEATHORALLDEATH;
+			else
+				searchMode2Status = SEARCHMODE2STATUS.SOMEDEATH;
+				
+
+			return move;
+			
+		}
+		
+		private void evaluateLevel1(BitBoard state, int[] moves, int[] values, int from, int to, AtomicBoolean cancelled) 
+		// stores the minimax value for computer of the level 1 move moves[i] in values[i], for i in from .. to-1. 
+		// state is the game state of the present node and is only changed by the calling thread.
+		// the evaluation stops when the time budget is over or the search is cancelled, see isSearchStopped(), 
+		// or when another task has stopped
+		{
+			int[][] plyMoves = new int[Math.max(MINIMAXDEPTH, 1)][GAMESTATELENGTH]; // move list of every level
+			CandidateSet candidates = new CandidateSet(state);
+			for (int i = from; i < to; i++) {
+				if (cancelled.get())
+					return;
+				// level 2 is for person to move, its value for computer is the negated value for person
+				state.place(moves[i], TURN.COMPUTER_TURN);
+				candidates.place(moves[i]);
+				values[i] = -alphaBeta(state, TURN.PERSON_TURN, MINIMAXDEPTH - 1, -1, 1, plyMoves, candidates);
+				candidates.remove(moves[i]);
+				state.remove(moves[i]);
+				if (isSearchStopped()) {
+					cancelled.set(true); // values[i] may be cut short
+					return;
+				}
+			}
+		}
+		
+		private class MinimaxTask extends RecursiveAction
+		// fork-join task evaluating the level 1 moves from .. to-1 of minimax_alphabeta(), see evaluateLevel1(). 
+		// a range of more than one move is split in two tasks; a single move is evaluated on a copy of state
+		{
+			private static final long serialVersionUID = 1L;
+			private final BitBoard state;
+			private final int[] moves;
+			private final int[] values;
+			private final int from;
+			private final int to;
+			private final AtomicBoolean cancelled;
+			
+			public MinimaxTask(BitBoard state, int[] moves, int[] values, int from, int to, AtomicBoolean cancelled) {
+				this.state = state;
+				this.moves = moves;
+				this.values = values;
+				this.from = from;
+				this.to = to;
+				this.cancelled = cancelled;
+			}
+			
+			@Override
+			protected void compute() {
+				if (cancelled.get())
+					return;
+				if (to - from > 1) {
+					int middle = (from + to) >>> 1;
+					invokeAll(new MinimaxTask(state, moves, values, from, middle, cancelled), 
+							new MinimaxTask(state, moves, values, middle, to, cancelled));
+				}
+				else
+					evaluateLevel1(new BitBoard(state), moves, values, from, to, cancelled);
+			}
+		}
+		
+		private int alphaBeta(BitBoard state, TURN turn, int depth, int alpha, int beta, int[][] plyMoves, CandidateSet candidates) 
+		// negamax value for turn, who is to move in state, searching depth levels: 1 means turn wins, -1 means turn 
+		// loses and 0 means no decision within depth levels. the search stops as soon as a value >= beta is found.
+		// moves are ordered by threat: an immediate win is taken at once, an immediate win of the opponent must be 
+		// blocked, and two of them cannot both be blocked. the other candidate moves are tried next to existing tiles first.
+		// plyMoves[depth-1] holds the moves of this level; candidates is kept for state. state is unchanged on return
+		{
+			if (depth <= 0)
+				return 0;
+			
+			TURN opponent = getNextTurn(turn);
+			int threats = 0;
+			int block = -1;
+			for (int index = state.nextEmpty(0); index >= 0; index = state.nextEmpty(index + 1)) {
+				if (winsAt(state, index, turn))
+					return 1;
+				if ((depth > 1) && (threats < 2) && winsAt(state, index, opponent)) {
+					threats++;
+					block = index;
+				}
+			}
+			
+			if (depth == 1)
+				return 0; // no level is left for the opponent to win on
+			if (threats >= 2)
+				return -1;
+			if (depth == 2)
+				return 0; // the opponent has no immediate win left after a block, and no level is left for turn to win on
+			if ((depth == 3) && (threats == 0)) {
+				// no move of turn gives the opponent an immediate win, so the value is at least 0. it is 1 if a move 
+				// makes two immediate wins at once, because the opponent can only block one of them
+				if (beta <= 0)
+					return 0;
+				for (int index = state.nextEmpty(0); index >= 0; index = state.nextEmpty(index + 1)) {
+					if (countThreats(state, index, turn, null) >= 2)
+						return 1;
+				}
+				return 0;
+			}
+
+			if (isSearchStopped())
+				return 0; // the value is discarded, see evaluateLevel1()
+			int[] moves = plyMoves[depth - 1];
+			int count = 0;
+			if (threats == 1) 
+				moves[count++] = block; // any other move loses on the next level
+			else {
+				for (int index = state.nextEmpty(0); index >= 0; index = state.nextEmpty(index + 1)) {
+					if (state.hasNeighbor(index))
+						moves[count++] = index;
+				}
+				for (int index = state.nextEmpty(0); index >= 0; index = state.nextEmpty(index + 1)) {
+					if (!state.hasNeighbor(index) && candidates.isNear(index))
+						moves[count++] = index;
+				}
+				if (count == 0) {
+					// the tiles near the others are all taken
+					for (int index = state.nextEmpty(0); index >= 0; index = state.nextEmpty(index + 1))
+						moves[count++] = index;
+				}
+			}
+			if (count == 0)
+				return 0; // the table is full
+			
+			int best = -1;
+			for (int i = 0; i < count; i++) {
+				state.place(moves[i], turn);
+				candidates.place(moves[i]);
+				int value = -alphaBeta(state, opponent, depth - 1, -beta, -alpha, plyMoves, candidates);
+				candidates.remove(moves[i]);
+				state.remove(moves[i]);
+				if (value > best) {
+					best = value;
+					if (best > alpha)
+						alpha = best;
+					if (alpha >= beta)
+						break;
+				}
+			}
+			return best;
+		}
+		
+		public int bestMCTSMove()
+		{
+			return bestMCTSMove(new SearchBudget(NUMROLLOUTSIMULATION, SEARCHTIMELIMIT));
+		}
+		
+		public int bestMCTSMove(SearchBudget budget)
+		{
+			int move = runSearch(budget);
+			if (move >= 0)
+				return move;
+			if (budget.isCancelled())
+				return -1; // the top node may not even be expanded
+			return selectMove();
+		}
+		
+		public int selectMove()
+		// the move of the child node with the best average score, after the search
+		{
+			float max = -Float.MAX_VALUE;
+		    int maxIndex = r.nextInt(nextMoves.size());
+		    float randomizer;
+		    for (int i = 0; i < nextMoves.size(); i++) {
+		    	MCTSNode node = nextMoves.get(i);
+		    	if ((searchMode2Status == SEARCHMODE2STATUS.SOMEDEATH) && !isMinimaxMove(nextMoveIndices[i]))
+		    		continue; // the move was not searched, see bestUCTSelection()
+		        float nodeScore = (float) node.getScore() / ((float) (node.getTimesVisited() + Float.MIN_VALUE));
+		        if (node.provenWinner != null)
+		        	nodeScore = (node.provenWinner == TURN.COMPUTER_TURN) ? 2 : -2; // beyond any average score
+		        randomizer = Float.MIN_VALUE * r.nextInt(GAMESTATELENGTH * GAMESTATELENGTH);
+		        nodeScore = nodeScore + randomizer;
+		        
+//				this is useful output
+//		    	System.out.println("i=" + i + " move="+ node.getindexFromParentNode() + " timesVisited: " + node.getTimesVisited() + " nodeScore " + nodeScore);
+		        
+		        if (nodeScore > max) {
+		        	max = nodeScore;
+		            maxIndex = i;
+		        }
+		    }
+//	    	System.out.println("bestMCTSMove=" + nextMoves.get(maxIndex).getindexFromParentNode() + " timesVisited: " + nextMoves.get(maxIndex).getTimesVisited() + " maxScore="+ max);
+
+		    return nextMoveIndices[maxIndex];
+		}
+		
+		public int runSearch(SearchBudget budget)
+		// runs the roll out simulations of bestMCTSMove() from the present (top) node until budget is exhausted, 
+		// or until the choice is clear, see EARLYSTOP_MODE.
+		// returns the move if the minimax check of SEARCH_MODE = 2 decides the search, otherwise -1
+		{
+			searchMode2Status = SEARCHMODE2STATUS.NOTMET;
+			minimax4K = 0;
+			searchBudget = budget;
+			
+			if (THREAT_MODE != 0) {
+				int move = threatSpaceMove(this, nodeGameState);
+				if (move >= 0)
+					return move;
+			}
+			
+			int move = runTrials(budget);
+			if ((move < 0) && (EARLYSTOP_MODE == 2) && (provenWinner == null) && isCritical()) {
+				// critical: the most visited move is not the best scored one
+				SearchBudget extension = takeSavedBudget(budget);
+				if (extension != null) {
+					searchBudget = extension;
+					move = runTrials(extension);
+				}
+			}
+			return move;
+		}
+		
+		private int runTrials(SearchBudget budget) 
+		// the trials of runSearch(), returns the move if the search is decided, otherwise -1
+		{
+			RolloutEngine engine = rolloutEngine.get();
+			for (int i = 0; !budget.isExhausted(i); i++) {
+
+				long startTime = searchStatistics.beginTrial(engine);
+				runTrial(nodeGameState);
+				searchStatistics.endTrial(engine, startTime);
+				if ((SOLVER_MODE == 1) && (provenWinner != null))
+					return provenMove(); // the game is decided, a proven loss is left to selectMove()
+				if ( (SEARCH_MODE == 2) && (searchMode2Status == SEARCHMODE2STATUS.MET) ) {
+					// here once a roll out simulation hits a terminal state <= NUMSIMULATIONDEPTH steps 
+					// of simulation, run minimax under the top node
+
+					int move = minimax_alphabeta(nodeGameState);
+
+					// if found a winning move, then simply return
+					if (searchMode2Status == SEARCHMODE2STATUS.WIN) 
+						return move;
+					
+					// if no sudden-death within 4 steps or hopeless, then continue MCTS 
+					// otherwise, recommended move belongs to the subset obtained by minimax_alphabeta, i.e., the list of minimax4Moves
+					if (searchMode2Status == SEARCHMODE2STATUS.SOMEDEATH) {
+//						System.out.println("minimax_4 takes effect!");
+						// if there is only one move, return the move obtained by minimax_alphabeta and end the search
+						if (minimax4K == 1)
+							return move;
+						// otherwise, let MCTS continue among the moves in minimax4Moves
+					}
+				}
+				
+				// the children are scanned every 64 trials
+				if ((EARLYSTOP_MODE != 0) && ((i & 63) == 63) && isDecided(budget.remainingRollouts(i + 1))) {
+					saveBudget(budget, i + 1);
+					break;
+				}
+			}
+			return -1;
+		}
+		
+		private boolean isDecided(int remaining) 
+		// true if no results of remaining more roll outs can change the move of selectMove(): the child node with 
+		// the best average score, among the moves selectMove() considers, keeps a better average with every remaining 
+		// roll out lost than every other of them with every remaining roll out won
+		{
+			int bestIndex = bestAverageIndex();
+			if (bestIndex < 0)
+				return false;
+			ArrayList<MCTSNode> moves = nextMoves;
+			MCTSNode best = moves.get(bestIndex);
+			float worst = (float) (best.getScore() - remaining) / (best.getTimesVisited() + remaining + Float.MIN_VALUE);
+			for (int i = 0; i < moves.size(); i++) {
+				MCTSNode node = moves.get(i);
+				if ((i == bestIndex) || !isChoice(i))
+					continue;
+				float most = (float) (node.getScore() + remaining) / (node.getTimesVisited() + remaining + Float.MIN_VALUE);
+				if (most >= worst)
+					return false;
+			}
+			return true;
+		}
+		
+		private boolean isCritical() 
+		// true if the most visited child node is not the one with the best average score, among the moves 
+		// selectMove() considers
+		{
+			int mostIndex = -1;
+			int mostVisits = -1;
+			ArrayList<MCTSNode> moves = nextMoves;
+			for (int i = 0; (moves != null) && (i < moves.size()); i++) {
+				if (isChoice(i) && (moves.get(i).getTimesVisited() > mostVisits)) {
+					mostVisits = moves.get(i).getTimesVisited();
+					mostIndex = i;
+				}
+			}
+			return (mostIndex >= 0) && (mostIndex != bestAverageIndex());
+		}
+		
+		private int bestAverageIndex() {
+			// the position in nextMoves of the child node with the best average score among the moves 
+			// selectMove() considers, -1 if there is none
+			int bestIndex = -1;
+			float best = -Float.MAX_VALUE;
+			ArrayList<MCTSNode> moves = nextMoves;
+			for (int i = 0; (moves != null) && (i < moves.size()); i++) {
+				if (!isChoice(i))
+					continue;
+				MCTSNode node = moves.get(i);
+				float nodeScore = (float) node.getScore() / (node.getTimesVisited() + Float.MIN_VALUE);
+				if (nodeScore > best) {
+					best = nodeScore;
+					bestIndex = i;
+				}
+			}
+			return bestIndex;
+		}
+		
+		private boolean isChoice(int i) {
+			// false if selectMove() leaves out the child node nextMoves.get(i), or if it is a proven loss
+			if ((searchMode2Status == SEARCHMODE2STATUS.SOMEDEATH) && !isMinimaxMove(nextMoveIndices[i]))
+				return false;
+			return nextMoves.get(i).provenWinner != TURN.PERSON_TURN;
+		}
+		
+		public void addRootStatistics(RootStatistics stats) {
+			// adds the visits and scores of the child nodes of the present (top) node
+			for (int i = 0; (nextMoves != null) && (i < nextMoves.size()); i++) {
+				MCTSNode node = nextMoves.get(i);
+				stats.visits[nextMoveIndices[i]] += node.getTimesVisited();
+				stats.scores[nextMoveIndices[i]] += node.getScore();
+			}
+		}
+		   
+		public int minimaxMove(TURN myTurn)
+		{
+			return minimaxMove(myTurn, nodeGameState);
+		}
+		
+		private int minimaxMove(TURN myTurn, BitBoard state)
+		// state is the game state of the present node and is unchanged on return
+		{
+			int turn;
+			if (myTurn == TURN.COMPUTER_TURN) 
+				turn = 1;
+			else 
+				turn = -1;
+			
+			if (checkWinner(state, indexFromParentNode)) {
+				if (nodeTurn == TURN.COMPUTER_TURN)
+					score = -1; // COMPUTER loses
+				else 
+					score = 1; // COMPUTER wins
+				
+				return indexFromParentNode;
+			}
+			else {
+				if (levelFromTopNode < NUMTREELEVEL_MINIMAX)
+					expand(state);
+
+				if (isLeaf()) { 
+					score = 0;
+
+					return indexFromParentNode;
+				}
+				else {
+					int max = -1 * turn;
+					int maxIndex = 0;
+					for (int i = 0; (i < nextMoves.size()) && !isSearchStopped(); i++) {
+						MCTSNode node = nextMoves.get(i);
+						node.minimaxMove(getNextTurn(nodeTurn), enterChild(i, state));
+						leaveChild(i, state);
+						if (node.getScore() * turn > max * turn) {
+				        	max = node.getScore();
+				            maxIndex = i;
+						}
+					}
+					score = max;
+					
+					return nextMoveIndices[maxIndex];
+				}
+			}
+			
+		}
+	}
+
+	
+	
+	public class TranspositionTable
+	// bounded table of MCTSNodes keyed by the BitBoard.zobristHash() of their game state, see TRANSPOSITION_MODE.
+	// a hash selects a bucket of TABLEBUCKET slots. a node is stored in an empty slot of its bucket, or else replaces 
+	// the least visited node of the bucket; a replaced node stays in the DAG, it is only no longer found for linking.
+	// the slots are changed with compare-and-set, so the threads of a tree parallel search can share the table.
+	// the hashes are kept next to each other in keys, so that a lookup reads one cache line instead of TABLEBUCKET nodes;
+	// a key is only a hint, the hash of the node in the slot decides
+	{
+		private static final int TABLEBUCKET = 4;
+		private final AtomicReferenceArray<MCTSNode> slots;
+		private final AtomicLongArray keys;
+		private final int bucketMask;
+		
+		public TranspositionTable(int bits) {
+			slots = new AtomicReferenceArray<MCTSNode>(1 << bits);
+			keys = new AtomicLongArray(1 << bits);
+			bucketMask = ((1 << bits) - 1) & ~(TABLEBUCKET - 1);
+		}
+		
+		public int getCapacity() {
+			return slots.length();
+		}
+		
+		public void clear() {
+			// only called between searches, when no other thread uses the table, so plain writes are enough; 
+			// a volatile write per slot made clearing a large table take longer than a short search
+			for (int slot = 0; slot < slots.length(); slot++) {
+				slots.setPlain(slot, null);
+				keys.setPlain(slot, 0);
+			}
+		}
+		
+		private int bucketOf(long hash) {
+			// the low bits of a Zobrist hash are as random as the high bits
+			return (int) (hash ^ (hash >>> 32)) & bucketMask;
+		}
+		
+		public MCTSNode find(long hash) 
+		// the node stored for the game state with hash, null if there is none
 		{
-		    int maxIndex = 0;
-
-		    int turn;
-			if (getTurn() == TURN.COMPUTER_TURN) 
+			int bucket = bucketOf(hash);
+			for (int slot = bucket; slot < bucket + TABLEBUCKET; slot++) {
+				if (keys.get(slot) != hash)
+					continue;
+				MCTSNode stored = slots.get(slot);
+				if ((stored != null) && (stored.getPositionHash() == hash))
+					return stored;
+			}
+			return null;
+		}
+		
+		public MCTSNode findOrStore(MCTSNode node) 
+		// returns the node stored for the game state of node, after storing node if there is none.
+		// when two threads store the same game state at once, both get the node of the first one
+		{
+			long hash = node.getPositionHash();
+			int bucket = bucketOf(hash);
+			while (true) {
+				MCTSNode stored = find(hash);
+				if (stored != null)
+					return stored;
+				
+				int victim = -1;
+				MCTSNode victimNode = null;
+				for (int slot = bucket; slot < bucket + TABLEBUCKET; slot++) {
+					stored = slots.get(slot);
+					if (stored == null) {
+						victim = slot;
+						victimNode = null;
+						break;
+					}
+					if ((victimNode == null) || (stored.getTimesVisited() < victimNode.getTimesVisited())) {
+						victim = slot;
+						victimNode = stored;
+					}
+				}
+				if (slots.compareAndSet(victim, victimNode, node)) {
+					keys.set(victim, hash);
+					return node;
+				}
+				// another thread changed the slot, it may have stored the same game state
+			}
+		}
+	}
+	
+	
+	
+	public class MCTSNodePool
+	// struct-of-arrays MCTS tree: node i is described by visits[i], score[i], move[i], level[i], 
+	// firstChild[i] and childCount[i]. The children of a node are stored next to each other.
+	// nodes do not keep a game state; board is walked down from the root by placing moves during 
+	// selection and removing them on the way back.
+	// the arrays grow by POOLCHUNK nodes and are kept between searches, reset() only forgets the nodes
+	{
+		private static final int POOLCHUNK = 1 << 16;
+		
+		private int[] visits;
+		private int[] score;
+		private int[] move;
+		private int[] level;
+		private int[] firstChild;
+		private int[] childCount;
+		private int size;
+		private final BitBoard board;
+		private MCTSNode rootNode; // root of the search, also provides the roll out and minimax routines
+		
+		public MCTSNodePool() {
+			visits = new int[POOLCHUNK];
+			score = new int[POOLCHUNK];
+			move = new int[POOLCHUNK];
+			level = new int[POOLCHUNK];
+			firstChild = new int[POOLCHUNK];
+			childCount = new int[POOLCHUNK];
+			size = 0;
+			board = new BitBoard();
+		}
+		
+		public void reset() {
+			size = 0;
+		}
+		
+		public int getSize() {
+			return size;
+		}
+		
+		public int getCapacity() {
+			return visits.length;
+		}
+		
+		private void ensureCapacity(int needed) {
+			if (needed <= visits.length)
+				return;
+			int capacity = ((needed + POOLCHUNK - 1) / POOLCHUNK) * POOLCHUNK;
+			visits = Arrays.copyOf(visits, capacity);
+			score = Arrays.copyOf(score, capacity);
+			move = Arrays.copyOf(move, capacity);
+			level = Arrays.copyOf(level, capacity);
+			firstChild = Arrays.copyOf(firstChild, capacity);
+			childCount = Arrays.copyOf(childCount, capacity);
+		}
+		
+		private int newNodes(int count) 
+		// returns the index of the first of count fresh nodes
+		{
+			ensureCapacity(size + count);
+			searchStatistics.addNodes(count);
+			int first = size;
+			for (int i = first; i < first + count; i++) {
+				visits[i] = 0;
+				score[i] = 0;
+				firstChild[i] = -1;
+				childCount[i] = 0;
+			}
+			size += count;
+			return first;
+		}
+		
+		private TURN turnOf(int node) {
+			// the root is always the computer's turn
+			if (level[node] % 2 == 0)
+				return TURN.COMPUTER_TURN;
+			else 
+				return TURN.PERSON_TURN;
+		}
+		
+		private void expand(int node) {
+			// board holds the game state of node
+			if (firstChild[node] >= 0)
+				return;
+			CandidateSet candidates = rolloutEngine.get().getCandidates();
+			candidates.reset(board);
+			int count = candidates.collect(board);
+			int[] moves = candidates.getMoves();
+			int first = newNodes(count);
+			for (int i = 0; i < count; i++) {
+				move[first + i] = moves[i];
+				level[first + i] = level[node] + 1;
+			}
+			firstChild[node] = first;
+			childCount[node] = count;
+		}
+		
+		private int randomSelection(int node) {
+			return firstChild[node] + r.nextInt(childCount[node]);
+		}
+		
+		private int bestUCTSelection(int node) {
+			// same selection rule as MCTSNode.bestUCTSelection()
+			int maxIndex = firstChild[node];
+			int turn;
+			if (turnOf(node) == TURN.COMPUTER_TURN) 
 				turn = 1;
 			else 
 				turn = -1;
-		      
-			//the randomizer is a tiny random number added for tie-breaking
-			float bias, randomizer, biasedScore = 0, nodeScore;
-		    float max = -Float.MAX_VALUE * turn;
-		    float C = 1;
-		    for (int i = 0; i < nextMoves.size(); i++) {
-		    	MCTSNode node = nextMoves.get(i);
-		    	
-        		if ((SEARCH_MODE == 2) && (searchMode2Status == SEARCHMODE2STATUS.SOMEDEATH) && (levelFromTopNode == 1)) {
-        			// do not bother to select any node that is not in the list of minimax4Moves
-        			boolean found = false;
-        			int move = node.getindexFromParentNode();
-        			for (int j=0; j<minimax4K; j++) {
-        				if (move == minimax4Moves[j]) 
-        					found = true;
-        			}
-        			if (found == false)
-        				continue; 
-        		}    		        			
-		    	
-		        nodeScore = (float) node.getScore() / ((float) (node.getTimesVisited() + Float.MIN_VALUE));
-		        if (this.getTimesVisited() == 0)
-		        	bias = 0;
-		        else
-		        	bias = 2 * C * (float) (Math.sqrt(Math.log((float) this.getTimesVisited()) / ((float) node.getTimesVisited() + Float.MIN_VALUE)));
-		        randomizer = Float.MIN_VALUE * r.nextInt(GAMESTATELENGTH * GAMESTATELENGTH);
-		        biasedScore = nodeScore + randomizer + (bias * turn);
-		       		        
-		        if (biasedScore * turn > max * turn) {
-		        	max = biasedScore;
-		            maxIndex = i;
-		        }
-		    }
-		      		    
-		    return nextMoves.get(maxIndex);
+			
+			float bias, randomizer, biasedScore, nodeScore;
+			float max = -Float.MAX_VALUE * turn;
+			float C = 1;
+			for (int child = firstChild[node]; child < firstChild[node] + childCount[node]; child++) {
+				
+				if ((searchMode2Status == SEARCHMODE2STATUS.SOMEDEATH) && (level[node] == 0)) {
+					// do not bother to select any node that is not in the list of minimax4Moves
+					boolean found = false;
+					for (int j=0; j<minimax4K; j++) {
+						if (move[child] == minimax4Moves[j]) 
+							found = true;
+					}
+					if (found == false)
+						continue; 
+				}
+				
+				nodeScore = (float) score[child] / (visits[child] + Float.MIN_VALUE);
+				if (visits[node] == 0)
+					bias = 0;
+				else
+					bias = 2 * C * (float) (Math.sqrt(Math.log((float) visits[node]) / (visits[child] + Float.MIN_VALUE)));
+				randomizer = Float.MIN_VALUE * r.nextInt(GAMESTATELENGTH * GAMESTATELENGTH);
+				biasedScore = nodeScore + randomizer + (bias * turn);
+				
+				if (biasedScore * turn > max * turn) {
+					max = biasedScore;
+					maxIndex = child;
+				}
+			}
+			return maxIndex;
 		}
-    
-		public TURN simulateFrom(TILE_STATUS[] state, TURN myTurn, int previousMove) 
-		// simulation from state and it is myTurn to move 
-		{
-			if (checkWinner(state, previousMove)) { // if this state is terminal, then myTurn loses. So getNextTurn(myTurn) wins
-				    			
-				return(getNextTurn(myTurn)); 
-			} 
+		
+		private TURN runTrial(int node) {
+			// board holds the game state of node; it is restored before returning
+			TURN rolloutResult = TURN.GAME_DRAW;
+			TURN nodeTurn = turnOf(node);
+			
+			if (checkWinner(board, move[node])) 
+				rolloutResult = rootNode.getNextTurn(nodeTurn); 
 			else {
-				ArrayList<Integer> availableIndex = new ArrayList<Integer>();
-				for (int index = 0; index < GAMESTATELENGTH; index++) {
-					if (state[index] == TILE_STATUS.TILE_STATUS_EMPTY) 
-						availableIndex.add(index);
-				}
-		      
-				if (availableIndex.size() > 0) {
-					
-					simulationDepth++;
+				if (level[node] < NUMTREELEVEL_MCTS)
+					expand(node);
+				
+				if ((visits[node] == 0) || (childCount[node] == 0)) {
+					BitBoard s = rolloutEngine.get().getScratchBoard();
+					s.copyFrom(board);
+					rootNode.simulationDepth = level[node]; 
+					// simulationDepth is counted from Top Node, not from the Leaf Node
+					if ((THREAT_MODE == 2) && (threatSearch.get().findVCF(s, nodeTurn, VCFLEAFNODES) >= 0))
+						rolloutResult = nodeTurn; // the player to move wins by continuous fours, no roll out is needed
+					else
+						rolloutResult = rootNode.simulateFrom(s, nodeTurn, move[node]);
 					
-					int index = availableIndex.get(r.nextInt(availableIndex.size()));
-			  
-					if (myTurn == TURN.COMPUTER_TURN) 
-						state[index] = TILE_STATUS.TILE_STATUS_COMPUTER;
-					else 
-						state[index] = TILE_STATUS.TILE_STATUS_PERSON;	
-				  
-					return(simulateFrom(state, getNextTurn(myTurn), index));
+					if ( (rootNode.simulationDepth <= NUMSIMULATIONDEPTH) && (SEARCH_MODE == 2) && (searchMode2Status == SEARCHMODE2STATUS.NOTMET) ){
+						searchMode2Status = SEARCHMODE2STATUS.MET;
+					}
 				}
 				else {
-
-					return(TURN.GAME_DRAW);
+					int child;
+					if (NODE_SELECTION_MODE == 0)
+						child = randomSelection(node);
+					else
+						child = bestUCTSelection(node);
+					board.place(move[child], nodeTurn);
+					rolloutResult = runTrial(child);
+					board.remove(move[child]);
 				}
 			}
+			
+			visits[node]++;
+			if (rolloutResult == TURN.COMPUTER_TURN) 
+				score[node]++;
+			else if (rolloutResult == TURN.PERSON_TURN)
+				score[node]--;
+			
+			return rolloutResult;
 		}
- 
-		private TURN runTrial()
+		
+		public int bestMCTSMove(MCTSNode root, SearchBudget budget) 
+		// same search as root.bestMCTSMove(budget), with the tree kept in this pool
 		{
-			TURN rolloutResult = TURN.GAME_DRAW;
+			int minimaxMove = runSearch(root, budget);
+			if (minimaxMove >= 0)
+				return minimaxMove;
+			if (budget.isCancelled())
+				return -1; // the top node may not even be expanded
+			
+			int top = 0;
+			float max = -Float.MAX_VALUE;
+			int maxIndex = firstChild[top] + r.nextInt(childCount[top]);
+			float randomizer;
+			for (int child = firstChild[top]; child < firstChild[top] + childCount[top]; child++) {
+				if ((searchMode2Status == SEARCHMODE2STATUS.SOMEDEATH) && !isMinimaxMove(move[child]))
+					continue; // the move was not searched, see bestUCTSelection()
+				float nodeScore = (float) score[child] / (visits[child] + Float.MIN_VALUE);
+				randomizer = Float.MIN_VALUE * r.nextInt(GAMESTATELENGTH * GAMESTATELENGTH);
+				nodeScore = nodeScore + randomizer;
 				
-	        if (checkWinner(nodeGameState, indexFromParentNode)) 
-	        	rolloutResult = getNextTurn(nodeTurn); 
-	        else {
-	        	if (levelFromTopNode < NUMTREELEVEL_MCTS)
-	        		expand();
-
-	        	if ((timesVisited == 0) || (isLeaf())) {		    	  
-			      	        		
-	        		TILE_STATUS[] s;
-	        		s = new TILE_STATUS[GAMESTATELENGTH];
-	        		for (int index = 0; index < GAMESTATELENGTH; index++) 
-	        			s[index] = nodeGameState[index];
-  					
-	        		simulationDepth = levelFromTopNode; 
-	        		// simulationDepth is counted from Top Node, not from the Leaf Node
-	        		rolloutResult = simulateFrom(s, nodeTurn, indexFromParentNode);
-  					
-	        		if ( (simulationDepth <= NUMSIMULATIONDEPTH) && (SEARCH_MODE == 2) && (searchMode2Status == SEARCHMODE2STATUS.NOTMET) ){
-	        			searchMode2Status = SEARCHMODE2STATUS.MET;
-	        		}
-	        	}		      
-	        	else {	  			  				
-	        		// here one can choose to use random node selection or best UCT node selection
-	        		if (NODE_SELECTION_MODE == 0)
-	        			rolloutResult = randomSelection().runTrial(); 
-	        		else if (NODE_SELECTION_MODE == 1)
-	        			rolloutResult = bestUCTSelection().runTrial();
-	        	}
-	        }
-	        
-		    visit();
-
-		    if (rolloutResult != TURN.GAME_DRAW) {
-		    	if (rolloutResult == TURN.COMPUTER_TURN) 
-		    		incScore();
-		    	else if (rolloutResult == TURN.PERSON_TURN)
-		    		decScore();
-		    }		  
-	      
-		    return rolloutResult;
+				if (nodeScore > max) {
+					max = nodeScore;
+					maxIndex = child;
+				}
+			}
+			
+			return move[maxIndex];
 		}
 		
-		public int minimax_level4(TILE_STATUS[] state) 
-		// minimax search from the top node down 4 levels
-		// minimaxMove() uses recursion and causes memory issues
-		// minimax_level4() uses iteration and does not run into memory issues
+		public int runSearch(MCTSNode root, SearchBudget budget) 
+		// same as root.runSearch(budget), with the tree kept in this pool; the top node is node 0
 		{
-			int i1,i2,i3,i4;
-			int minimaxValue1, minimaxValue2, minimaxValue3, minimaxValue4;
-			int move = -1;
-			int tmpValue = 1;			
-
-			minimaxValue1 = -1; 
-			// initially, assume LOSS for computer on level 1
-			for (i1=0; i1<n*n; i1++) {
-				if (state[i1] != TILE_STATUS.TILE_STATUS_EMPTY)
-					continue;
-				
-				state[i1] = TILE_STATUS.TILE_STATUS_COMPUTER;
-				if (checkWinner(state, i1)) { 
-					// if a winning move is found on level 1 for computer, then no need to further search. 
-					// 1 means computer win.
-					// This is the move. return move and set the status to be WIN.
-					minimaxValue1 = 1;
-					move = i1;
-					state[i1] = TILE_STATUS.TILE_STATUS_EMPTY;
-					searchMode2Status = SEARCHMODE2STATUS.WIN;
-					return move;
-				}
+			reset();
+			rootNode = root;
+			board.copyFrom(root.getGameState());
+			int top = newNodes(1);
+			move[top] = root.getindexFromParentNode();
+			level[top] = 0;
+			
+			searchMode2Status = SEARCHMODE2STATUS.NOTMET;
+			minimax4K = 0;
+			searchBudget = budget;
+			
+			if (THREAT_MODE != 0) {
+				int threatMove = threatSpaceMove(root, board);
+				if (threatMove >= 0)
+					return threatMove;
+			}
+			
+			RolloutEngine engine = rolloutEngine.get();
+			for (int i = 0; !budget.isExhausted(i); i++) {
 				
-				minimaxValue2 = 1;
-				// initially, assume LOSS for person on level 2
-				for (i2=0; i2<n*n; i2++) {
-					if (state[i2] != TILE_STATUS.TILE_STATUS_EMPTY)
-						continue;
+				long startTime = searchStatistics.beginTrial(engine);
+				runTrial(top);
+				searchStatistics.endTrial(engine, startTime);
+				if ( (SEARCH_MODE == 2) && (searchMode2Status == SEARCHMODE2STATUS.MET) ) {
 					
-					state[i2] = TILE_STATUS.TILE_STATUS_PERSON;
-					if (checkWinner(state, i2)) {
-						// if a winning move is found on level 2 for person, then no need to further search on level 2. 
-						// -1 means computer loss.
-						// Continue to check other level 1 moves. 
-						minimaxValue2 = -1;
-						state[i2] = TILE_STATUS.TILE_STATUS_EMPTY;
-						break;
-					}
+					int minimaxMove = root.minimax_alphabeta(board);
 					
-					minimaxValue3 = -1;
-					// initially, assume LOSS for computer on level 3
-					for (i3=0; i3<n*n; i3++) {
-						if (state[i3] != TILE_STATUS.TILE_STATUS_EMPTY)
-							continue;
-						
-						state[i3] = TILE_STATUS.TILE_STATUS_COMPUTER;
-						
-						if (checkWinner(state, i3)) {
-							// if a winning move is found on level 3 for computer, then no need to further search on level 3. 
-							// 1 means computer win
-							// Continue to check other level 2 moves. 
-							minimaxValue3 = 1;
-							state[i3] = TILE_STATUS.TILE_STATUS_EMPTY;
-							break;
-						}
-						
-						minimaxValue4 = 0;
-						// since level 4 is the last level, the best hope for computer is tie.
-						// initially, assume TIE for person on level 4
-						for (i4=0; i4<n*n; i4++) {
-							if (state[i4] != TILE_STATUS.TILE_STATUS_EMPTY)
-								continue;
-							
-							state[i4] = TILE_STATUS.TILE_STATUS_PERSON;
-							
-							if (checkWinner(state, i4)) {
-								// if a winning move is found on level 4 for person, then no need to further search on level 4. 
-								// -1 means computer loss
-								// Continue to check other level 3 moves. 
-								minimaxValue4 = -1;
-								state[i4] = TILE_STATUS.TILE_STATUS_EMPTY;
-								break;
-							}
-							state[i4] = TILE_STATUS.TILE_STATUS_EMPTY;
-						}
-						
-						state[i3] = TILE_STATUS.TILE_STATUS_EMPTY;
-						
-						if (minimaxValue3 < minimaxValue4)
-							minimaxValue3 = minimaxValue4;
-						// minimaxValue3 of a level 3 node records the max of minimaxValue4 of all level 4 nodes under that level 3 node
-						// because the level 3 node is for computer to move and thus to choose max
+					if (searchMode2Status == SEARCHMODE2STATUS.WIN) 
+						return minimaxMove;
+					
+					if ((searchMode2Status == SEARCHMODE2STATUS.SOMEDEATH) && (minimax4K == 1))
+						return minimaxMove;
+				}
+			}
+			return -1;
+		}
+		
+		public void addRootStatistics(RootStatistics stats) {
+			// adds the visits and scores of the child nodes of the top node
+			int top = 0;
+			for (int child = firstChild[top]; child < firstChild[top] + childCount[top]; child++) {
+				stats.visits[move[child]] += visits[child];
+				stats.scores[move[child]] += score[child];
+			}
+		}
+	}
+	
+	public static class RootStatistics
+	// visits and scores of the child nodes of a top node, indexed by move, used to merge the trees of a root parallel search
+	{
+		public int decisiveMove; // move chosen by the minimax check of SEARCH_MODE = 2, -1 if none
+		public int[] minimaxMoves; // moves avoiding a sudden-death if the minimax check found SOMEDEATH, otherwise null
+		public final int[] visits;
+		public final int[] scores;
+		
+		public RootStatistics(int length) {
+			decisiveMove = -1;
+			minimaxMoves = null;
+			visits = new int[length];
+			scores = new int[length];
+		}
+	}
+	
+	public class SearchStatistics
+	// statistics of one search of choseTile(), returned with the move by search(). the counters are shared by the 
+	// threads of a parallel search and the root parallel workers; the times of the trials are summed over the threads.
+	// a trial is split at its roll out: selection is the time until the roll out starts (descent and expansion), 
+	// backup the time after it. a trial without a roll out (terminal or proven node, VCF at the leaf) counts as selection
+	{
+		private final long startTime;
+		private long elapsedNanos;
+		private int move = -1;
+		private boolean cancelled;
+		private final LongAdder trials = new LongAdder();
+		private final LongAdder rollouts = new LongAdder();
+		private final LongAdder rolloutPlies = new LongAdder();
+		private final LongAdder nodesAllocated = new LongAdder();
+		private final LongAccumulator maxTreeDepth = new LongAccumulator(Math::max, 0);
+		private final LongAdder minimaxCalls = new LongAdder();
+		private final LongAdder minimaxNanos = new LongAdder();
+		private final LongAdder selectionNanos = new LongAdder();
+		private final LongAdder rolloutNanos = new LongAdder();
+		private final LongAdder backupNanos = new LongAdder();
+		private final int[] rootVisits; // visits of the child nodes of the top node, indexed by move
+		
+		public SearchStatistics(int length) {
+			startTime = System.nanoTime();
+			rootVisits = new int[length];
+		}
+		
+		public long beginTrial(RolloutEngine engine) {
+			// returns the start time of a trial on the thread of engine
+			engine.rolloutNanos = -1;
+			return System.nanoTime();
+		}
+		
+		public void endTrial(RolloutEngine engine, long trialStart) {
+			long trialEnd = System.nanoTime();
+			trials.increment();
+			if (engine.rolloutNanos < 0) {
+				selectionNanos.add(trialEnd - trialStart);
+				return;
+			}
+			rollouts.increment();
+			rolloutPlies.add(engine.getPlies());
+			maxTreeDepth.accumulate(engine.leafLevel);
+			selectionNanos.add(engine.rolloutEndTime - engine.rolloutNanos - trialStart);
+			rolloutNanos.add(engine.rolloutNanos);
+			backupNanos.add(trialEnd - engine.rolloutEndTime);
+		}
+		
+		public void addNodes(int count) {
+			nodesAllocated.add(count);
+		}
+		
+		public void addMinimax(long nanos) {
+			minimaxCalls.increment();
+			minimaxNanos.add(nanos);
+		}
+		
+		public void addRootVisits(MCTSNode topNode) {
+			RootStatistics stats = new RootStatistics(rootVisits.length);
+			topNode.addRootStatistics(stats);
+			addRootVisits(stats);
+		}
+		
+		public void addRootVisits(MCTSNodePool pool) {
+			RootStatistics stats = new RootStatistics(rootVisits.length);
+			pool.addRootStatistics(stats);
+			addRootVisits(stats);
+		}
+		
+		public void addRootVisits(RootStatistics stats) {
+			for (int index = 0; index < rootVisits.length; index++)
+				rootVisits[index] += stats.visits[index];
+		}
+		
+		public void finish(int chosenMove) {
+			move = chosenMove;
+			elapsedNanos = System.nanoTime() - startTime;
+		}
+		
+		public int getMove() {
+			return move;
+		}
+		
+		public boolean isCancelled() {
+			return cancelled;
+		}
+		
+		public long getElapsedNanos() {
+			return elapsedNanos;
+		}
+		
+		public long getTrials() {
+			return trials.sum();
+		}
+		
+		public long getRollouts() {
+			return rollouts.sum();
+		}
+		
+		public double getRolloutsPerSecond() {
+			return (elapsedNanos == 0) ? 0 : getRollouts() * 1e9 / elapsedNanos;
+		}
+		
+		public long getNodesAllocated() {
+			return nodesAllocated.sum();
+		}
+		
+		public int getMaxTreeDepth() {
+			return (int) maxTreeDepth.get();
+		}
+		
+		public double getAverageRolloutLength() {
+			long count = getRollouts();
+			return (count == 0) ? 0 : (double) rolloutPlies.sum() / count;
+		}
+		
+		public long getMinimaxCalls() {
+			return minimaxCalls.sum();
+		}
+		
+		public long getMinimaxNanos() {
+			return minimaxNanos.sum();
+		}
+		
+		public long getSelectionNanos() {
+			return selectionNanos.sum();
+		}
+		
+		public long getRolloutNanos() {
+			return rolloutNanos.sum();
+		}
+		
+		public long getBackupNanos() {
+			return backupNanos.sum();
+		}
+		
+		public int[] getRootVisits() {
+			return rootVisits.clone();
+		}
+		
+		@Override
+		public String toString() {
+			return String.format("move=%d time=%.1fms trials=%d rollouts=%d rollouts/s=%.0f nodes=%d maxDepth=%d " + 
+					"rolloutLength=%.1f minimax=%d/%.1fms selection=%.1fms rollout=%.1fms backup=%.1fms", 
+					move, elapsedNanos / 1e6, getTrials(), getRollouts(), getRolloutsPerSecond(), getNodesAllocated(), 
+					getMaxTreeDepth(), getAverageRolloutLength(), getMinimaxCalls(), getMinimaxNanos() / 1e6, 
+					getSelectionNanos() / 1e6, getRolloutNanos() / 1e6, getBackupNanos() / 1e6);
+		}
+	}
+	
+	// JFR events of the engine, recorded with e.g. java -XX:StartFlightRecording ... and free when not recorded
+	
+	@Name("com.tictactoe.Search")
+	@Label("Gomoku Search")
+	@Category("Gomoku")
+	@Description("One search of choseTile(), see SearchStatistics")
+	static class SearchEvent extends Event {
+		@Label("Board Size") int boardSize;
+		@Label("Search Mode") int searchMode;
+		@Label("Threads") int threads;
+		@Label("Move") int move;
+		@Label("Cancelled") boolean cancelled;
+		@Label("Trials") long trials;
+		@Label("Roll Outs") long rollouts;
+		@Label("Roll Outs per Second") double rolloutsPerSecond;
+		@Label("Nodes Allocated") long nodesAllocated;
+		@Label("Max Tree Depth") int maxTreeDepth;
+		@Label("Average Roll Out Length") double averageRolloutLength;
+		@Label("Minimax Calls") long minimaxCalls;
+		@Label("Minimax Time") @Timespan long minimaxTime;
+		@Label("Selection Time") @Timespan long selectionTime;
+		@Label("Roll Out Time") @Timespan long rolloutTime;
+		@Label("Backup Time") @Timespan long backupTime;
+	}
+	
+	@Name("com.tictactoe.TacticalCheck")
+	@Label("Gomoku Tactical Check")
+	@Category("Gomoku")
+	@Description("A minimax check of SEARCH_MODE = 2 or the threat search of THREAT_MODE at the top node")
+	static class TacticalCheckEvent extends Event {
+		@Label("Check") String check; // "minimax" or "threat"
+		@Label("Move") int move; // the move that decides the search, -1 if none
+		@Label("Status") String status; // searchMode2Status after the check
+	}
+
+	private void saveBudget(SearchBudget budget, int rolloutsDone) {
+		// keeps the budget an early stop leaves unused, see EARLYSTOP_MODE
+		savedRollouts = Math.min(savedRollouts + budget.remainingRollouts(rolloutsDone), budget.getMaxRollouts());
+		savedMillis = Math.min(savedMillis + budget.remainingMillis(), budget.getTimeLimitMillis());
+	}
+	
+	private SearchBudget takeSavedBudget(SearchBudget budget) {
+		// the extension of a critical search with budget, taken from the saved budget; null if too little is saved
+		int rollouts = Math.min(savedRollouts, (int) (budget.getMaxRollouts() * EXTENSIONFRACTION));
+		long millis = Math.min(savedMillis, (long) (budget.getTimeLimitMillis() * EXTENSIONFRACTION));
+		if ((rollouts <= 0) || ((budget.getTimeLimitMillis() > 0) && (millis <= 0)))
+			return null;
+		savedRollouts -= rollouts;
+		savedMillis -= millis;
+		return budget.extend(rollouts, millis);
+	}
+	
+	private boolean isSearchStopped() {
+		// true if the running search is past its deadline or cancelled, see SearchBudget
+		SearchBudget budget = searchBudget;
+		return (budget != null) && budget.isStopped();
+	}
+	
+	public int[] getMinimaxMoves() {
+		// the moves kept by the last minimax check or threat search, see minimax4Moves
+		return Arrays.copyOf(minimax4Moves, minimax4K);
+	}
+	
+	private boolean isMinimaxMove(int move) {
+		// true if move is in the list of minimax4Moves
+		for (int j = 0; j < minimax4K; j++) {
+			if (move == minimax4Moves[j])
+				return true;
+		}
+		return false;
+	}
+	
+	private int threatSpaceMove(MCTSNode topNode, BitBoard state) 
+	// the ThreatSearch at the top node before MCTS, see THREAT_MODE; state is the game state of topNode.
+	// returns a move that decides the search, otherwise -1. if the person has a VCF and more than one move 
+	// defends against it, the search is restricted to those moves as for a sudden-death found by the minimax 
+	// check: searchMode2Status becomes SOMEDEATH and the moves are kept in minimax4Moves
+	{
+		TacticalCheckEvent event = new TacticalCheckEvent();
+		event.begin();
+		int move = threatCheck(topNode, state);
+		event.end();
+		if (event.shouldCommit()) {
+			event.check = "threat";
+			event.move = move;
+			event.status = searchMode2Status.name();
+			event.commit();
+		}
+		return move;
+	}
+	
+	private int threatCheck(MCTSNode topNode, BitBoard state) 
+	// the search of threatSpaceMove(). it is part of the time budget of the search: 
+	// at the deadline, or when the search is cancelled, it stops and no forced line is taken as found
+	{
+		ThreatSearch search = threatSearch.get();
+		SearchBudget budget = searchBudget;
+		int move = search.findVCF(state, TURN.COMPUTER_TURN, VCFNODES, budget);
+		if (move >= 0)
+			return move;
+		if (search.findVCF(state, TURN.PERSON_TURN, VCFNODES, budget) < 0)
+			return -1;
+		
+		int[] defences = new int[GAMESTATELENGTH];
+		int count = search.findDefences(state, TURN.COMPUTER_TURN, VCFNODES, budget, defences);
+		if (count == 0)
+			return -1; // every move loses to a VCF or the search is stopped, let MCTS choose
+		
+		if (SEARCH_MODE == 2) {
+			// the top node is tactical, so the minimax check runs now rather than after a short roll out.
+			// only the defences that are also among its minimax4Moves are kept
+			move = topNode.minimax_alphabeta(state);
+			if ( (searchMode2Status == SEARCHMODE2STATUS.WIN) || 
+					((searchMode2Status == SEARCHMODE2STATUS.SOMEDEATH) && (minimax4K == 1)) )
+				return move;
+			if (searchMode2Status == SEARCHMODE2STATUS.SOMEDEATH) {
+				int kept = 0;
+				for (int i = 0; i < count; i++) {
+					for (int j = 0; j < minimax4K; j++) {
+						if (defences[i] == minimax4Moves[j]) 
+							defences[kept++] = defences[i];
 					}
-					
-					state[i2] = TILE_STATUS.TILE_STATUS_EMPTY;
-
-					if (minimaxValue2 > minimaxValue3)
-						minimaxValue2 = minimaxValue3;
-						// minimaxValue2 of a level 2 node records the min of minimaxValue3 of all level 3 nodes under that level 2 node
-						// because the level 2 node is for person to move and thus to choose min
 				}
-				
-				state[i1] = TILE_STATUS.TILE_STATUS_EMPTY;
-
-				if (minimaxValue1 < minimaxValue2) {
-					// minimaxValue1 of a level 1 node records the max of minimaxValue2 of all level 2 nodes under that level 1 node
-					// because the level 1 node is for computer to move and thus to choose max
-					minimaxValue1 = minimaxValue2;
-					// if a new max is found for minimaxValue1, then reset minimax4K and minimax4Moves
-					move = i1;
-					minimax4Moves[0] = move;
-					minimax4K = 1;
+				if (kept == 0)
+					return -1; // keep the minimax4Moves
+				count = kept;
+			}
+		}
+		
+		if (count == 1)
+			return defences[0];
+		System.arraycopy(defences, 0, minimax4Moves, 0, count);
+		minimax4K = count;
+		searchMode2Status = SEARCHMODE2STATUS.SOMEDEATH;
+		return -1;
+	}
+	
+	private void copySettingsTo(GameAlgorithm worker) {
+		worker.NODE_SELECTION_MODE = NODE_SELECTION_MODE;
+		worker.SEARCH_MODE = SEARCH_MODE;
+		worker.TREE_MODE = TREE_MODE;
+		worker.NUMSIMULATIONDEPTH = NUMSIMULATIONDEPTH;
+		worker.MINIMAXDEPTH = MINIMAXDEPTH;
+		worker.THREAT_MODE = THREAT_MODE;
+		worker.VCFDEPTH = VCFDEPTH;
+		worker.VCFNODES = VCFNODES;
+		worker.VCFLEAFNODES = VCFLEAFNODES;
+		worker.NEIGHBOURDISTANCE = NEIGHBOURDISTANCE;
+		worker.ROLLOUT_MODE = ROLLOUT_MODE;
+		worker.TRANSPOSITION_MODE = TRANSPOSITION_MODE;
+		worker.TRANSPOSITIONTABLEBITS = TRANSPOSITIONTABLEBITS;
+		worker.WIDENING_MODE = WIDENING_MODE;
+		worker.WIDENINGCOEFFICIENT = WIDENINGCOEFFICIENT;
+		worker.WIDENINGEXPONENT = WIDENINGEXPONENT;
+		worker.RAVE_MODE = RAVE_MODE;
+		worker.RAVEEQUIVALENCE = RAVEEQUIVALENCE;
+		worker.RAVEBIAS = RAVEBIAS;
+		worker.SOLVER_MODE = SOLVER_MODE;
+		worker.EARLYSTOP_MODE = EARLYSTOP_MODE;
+		worker.EXTENSIONFRACTION = EXTENSIONFRACTION;
+	}
+	
+	void prepareTranspositionTable(boolean nodeTree) 
+	// empties the transposition table before a search. no table is used unless nodeTree, i.e. the search builds 
+	// an MCTSNode tree. the table is emptied after the search as well, so that it does not keep a released tree alive
+	{
+		if (!nodeTree || (TRANSPOSITION_MODE != 1))
+			transpositionTable = null;
+		else if ((transpositionTable == null) || (transpositionTable.getCapacity() != 1 << TRANSPOSITIONTABLEBITS))
+			transpositionTable = new TranspositionTable(TRANSPOSITIONTABLEBITS);
+		else
+			transpositionTable.clear();
+	}
+	
+	TranspositionTable getTranspositionTable() {
+		return transpositionTable;
+	}
+	
+	private synchronized ForkJoinPool prepareMinimaxPool() {
+		if ((minimaxPool == null) || (minimaxPool.getParallelism() != NUMTHREADS)) {
+			if (minimaxPool != null)
+				minimaxPool.shutdown();
+			minimaxPool = new ForkJoinPool(NUMTHREADS);
+		}
+		return minimaxPool;
+	}
+	
+	private void prepareSearchExecutor() {
+		if (searchExecutor == null || searchExecutorThreads != NUMTHREADS) {
+			if (searchExecutor != null)
+				searchExecutor.shutdown();
+			searchExecutorThreads = NUMTHREADS;
+			searchExecutor = Executors.newFixedThreadPool(NUMTHREADS, new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "GameAlgorithm search");
+					thread.setDaemon(true);
+					return thread;
 				}
-				else if (minimaxValue1 == minimaxValue2) {
-					// if the current minimaxValue2 is as good as the recorded minimaxValue1, then add the current move to minimax4Moves
-					minimax4Moves[minimax4K] = i1;
-					minimax4K++;					
+			});
+		}
+	}
+	
+	private void prepareRootWorkers() {
+		prepareSearchExecutor();
+		if ((rootWorkers == null) || (rootWorkers.length != NUMTHREADS)) {
+			rootWorkers = new GameAlgorithm[NUMTHREADS];
+			for (int w = 0; w < NUMTHREADS; w++)
+				rootWorkers[w] = new GameAlgorithm(currentTable, r.nextLong());
+		}
+		for (int w = 0; w < NUMTHREADS; w++) {
+			copySettingsTo(rootWorkers[w]);
+			rootWorkers[w].searchStatistics = searchStatistics; // the workers count into the statistics of this search
+		}
+	}
+	
+	private RootStatistics searchRootStatistics(BitBoard rootState, int previousMove, SearchBudget budget) 
+	// one tree of a root parallel search, run on a worker GameAlgorithm
+	{
+		MCTSNode curNode = new MCTSNode(rootState, TURN.COMPUTER_TURN, previousMove, 0);
+		RootStatistics stats = new RootStatistics(GAMESTATELENGTH);
+		
+		prepareTranspositionTable(TREE_MODE != 1);
+		if (transpositionTable != null)
+			transpositionTable.findOrStore(curNode);
+		
+		if (TREE_MODE == 1) {
+			if (nodePool == null)
+				nodePool = new MCTSNodePool();
+			stats.decisiveMove = nodePool.runSearch(curNode, budget);
+			nodePool.addRootStatistics(stats);
+		}
+		else {
+			stats.decisiveMove = curNode.runSearch(budget);
+			curNode.addRootStatistics(stats);
+			if (transpositionTable != null)
+				transpositionTable.clear();
+		}
+		if (searchMode2Status == SEARCHMODE2STATUS.SOMEDEATH)
+			stats.minimaxMoves = Arrays.copyOf(minimax4Moves, minimax4K);
+		return stats;
+	}
+	
+	private int rootParallelMove(final BitBoard rootState, final int previousMove, SearchBudget budget) 
+	// root parallel MCTS, see PARALLEL_MODE
+	{
+		prepareRootWorkers();
+		final SearchBudget workerBudget = budget.share(NUMTHREADS);
+		
+		ArrayList<Callable<RootStatistics>> tasks = new ArrayList<Callable<RootStatistics>>();
+		for (final GameAlgorithm worker : rootWorkers) {
+			tasks.add(new Callable<RootStatistics>() {
+				@Override
+				public RootStatistics call() {
+					return worker.searchRootStatistics(rootState, previousMove, workerBudget);
 				}
-				
-				if (tmpValue > minimaxValue2) // tmpValue is to store the min of minimaxValue2
-					tmpValue = minimaxValue2; 
-
-			}							
-
-			// if (tmpValue > -1) then there is no sudden-death. In this case, continue MCTS (return -1).
-			// else if (tmpValue ==-1) and (minimaxValue1 == -1), then every move leads to sudden-death. In this case, every move is a bad move. May continue MCTS (return -2).
-			// otherwise, there is some sudden-death, but it can be avoided by taking the correct move. In this case, return move obtained in the minimax search.
-
-			if (tmpValue > -1) 
-				move = -1; // no sudden-death within 4 steps
-			else if (minimaxValue1 == -1)
-				move = -2;	// the situation is hopeless, all moves lead to sudden-death
-			
-			if ((move == -1) || (move ==-2)) 
-				searchMode2Status = SEARCHMODE2STATUS.NODEATHORALLDEATH;
-			else
-				searchMode2Status = SEARCHMODE2STATUS.SOMEDEATH;
-				
-
-			return move;
-			
+			});
 		}
 		
-		public int bestMCTSMove()
-		{
-			searchMode2Status = SEARCHMODE2STATUS.NOTMET;
-			minimax4K = 0;
-
-			for (int i = 0; i < NUMROLLOUTSIMULATION; i++) {
-
-				runTrial();
-				if ( (SEARCH_MODE == 2) && (searchMode2Status == SEARCHMODE2STATUS.MET) ) {
-					// here once a roll out simulation hits a terminal state <= NUMSIMULATIONDEPTH steps 
-					// of simulation, run minimax under the top node
-
-					long startTime = System.currentTimeMillis();
-										
-					int move = minimax_level4(nodeGameState);
-					
-					long estimatedTime = System.currentTimeMillis() - startTime;
-					
-					System.out.println("minimax_level4 estimatedTime = " + estimatedTime);
-
-					// if found a winning move, then simply return
-					if (searchMode2Status == SEARCHMODE2STATUS.WIN) 
-						return move;
-					
-					// if no sudden-death within 4 steps or hopeless, then continue MCTS 
-					// otherwise, recommended move belongs to the subset obtained by minimax_level4, i.e., the list of minimax4Moves
-					if (searchMode2Status == SEARCHMODE2STATUS.SOMEDEATH) {
-//						System.out.println("minimax_4 takes effect!");
-						// if there is only one move, return the move obtained by minimax_level4 and end the search
-						if (minimax4K == 1)
-							return move;
-						// otherwise, let MCTS continue among the moves in minimax4Moves
-					}
+		RootStatistics merged = new RootStatistics(GAMESTATELENGTH);
+		List<RootStatistics> results = runSearchTasks(tasks, budget);
+		if (results == null)
+			return -1; // the search was cancelled, do not choose a move
+		for (RootStatistics stats : results) {
+			if (merged.decisiveMove < 0)
+					merged.decisiveMove = stats.decisiveMove;
+			if (merged.minimaxMoves == null)
+				merged.minimaxMoves = stats.minimaxMoves;
+			for (int index = 0; index < GAMESTATELENGTH; index++) {
+				merged.visits[index] += stats.visits[index];
+				merged.scores[index] += stats.scores[index];
+			}
+		}
+		searchStatistics.addRootVisits(merged);
+		
+		if (merged.decisiveMove >= 0)
+			return merged.decisiveMove;
+		
+		// same choice as bestMCTSMove(), over the merged statistics of the root child nodes.
+		// if a worker found some sudden-death, only the moves of its minimax4Moves are considered.
+		// moves without visits are left out, an empty tile that is no candidate move has no child node to score it
+		boolean[] candidate = new boolean[GAMESTATELENGTH];
+		int count = 0;
+		for (int visited = 1; (visited >= 0) && (count == 0); visited--) {
+			// if no move to consider was visited, they are all considered
+			for (int index = rootState.nextEmpty(0); index >= 0; index = rootState.nextEmpty(index + 1)) {
+				if (merged.visits[index] < visited)
+					continue;
+				candidate[index] = (merged.minimaxMoves == null);
+				for (int j = 0; (merged.minimaxMoves != null) && (j < merged.minimaxMoves.length); j++) {
+					if (merged.minimaxMoves[j] == index)
+						candidate[index] = true;
 				}
+				if (candidate[index])
+					count++;
 			}
-
-
-			float max = -Float.MAX_VALUE;
-		    int maxIndex = r.nextInt(nextMoves.size());
-		    float randomizer;
-		    for (int i = 0; i < nextMoves.size(); i++) {
-		    	MCTSNode node = nextMoves.get(i);
-		        float nodeScore = (float) node.getScore() / ((float) (node.getTimesVisited() + Float.MIN_VALUE));
-		        randomizer = Float.MIN_VALUE * r.nextInt(GAMESTATELENGTH * GAMESTATELENGTH);
-		        nodeScore = nodeScore + randomizer;
-		        
-//				this is useful output
-//		    	System.out.println("i=" + i + " move="+ node.getindexFromParentNode() + " timesVisited: " + node.getTimesVisited() + " nodeScore " + nodeScore);
-		        
-		        if (nodeScore > max) {
-		        	max = nodeScore;
-		            maxIndex = i;
-		        }
-		    }
-//	    	System.out.println("bestMCTSMove=" + nextMoves.get(maxIndex).getindexFromParentNode() + " timesVisited: " + nextMoves.get(maxIndex).getTimesVisited() + " maxScore="+ max);
-
-		    return nextMoves.get(maxIndex).getindexFromParentNode();
 		}
-		   
-		public int minimaxMove(TURN myTurn)
-		{
-			int turn;
-			if (myTurn == TURN.COMPUTER_TURN) 
-				turn = 1;
-			else 
-				turn = -1;
+		
+		float max = -Float.MAX_VALUE;
+		int maxIndex = -1;
+		int first = r.nextInt(count);
+		float randomizer;
+		for (int index = 0, i = 0; index < GAMESTATELENGTH; index++) {
+			if (!candidate[index])
+				continue;
+			if (i++ == first)
+				maxIndex = index;
+			float nodeScore = (float) merged.scores[index] / (merged.visits[index] + Float.MIN_VALUE);
+			randomizer = Float.MIN_VALUE * r.nextInt(GAMESTATELENGTH * GAMESTATELENGTH);
+			nodeScore = nodeScore + randomizer;
 			
-			if (checkWinner(nodeGameState, indexFromParentNode)) {
-				if (nodeTurn == TURN.COMPUTER_TURN)
-					score = -1; // COMPUTER loses
-				else 
-					score = 1; // COMPUTER wins
-				
-				return indexFromParentNode;
+			if (nodeScore > max) {
+				max = nodeScore;
+				maxIndex = index;
 			}
-			else {
-				if (levelFromTopNode < NUMTREELEVEL_MINIMAX)
-					expand();
-
-				if (isLeaf()) { 
-					score = 0;
-
-					return indexFromParentNode;
+		}
+		return maxIndex;
+	}
+	
+	private <T> List<T> runSearchTasks(List<Callable<T>> tasks, SearchBudget budget) 
+	// runs the tasks of a parallel search on the search executor and returns their results, or null if the 
+	// search was cancelled. it always waits for every task, so no thread of the search runs on after the return: 
+	// an interrupt of the calling thread or a failed task cancels budget, and the other tasks stop at their next roll out
+	{
+		List<Future<T>> futures = new ArrayList<Future<T>>();
+		for (Callable<T> task : tasks)
+			futures.add(searchExecutor.submit(task));
+		
+		List<T> results = new ArrayList<T>();
+		Throwable failure = null;
+		boolean interrupted = false;
+		for (Future<T> future : futures) {
+			while (true) {
+				try {
+					results.add(future.get());
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+					budget.cancel();
+				} catch (ExecutionException e) {
+					if (failure == null)
+						failure = e.getCause();
+					budget.cancel();
+					break;
 				}
-				else {
-					int max = -1 * turn;
-					int maxIndex = 0;
-					for (int i = 0; i < nextMoves.size(); i++) {
-						MCTSNode node = nextMoves.get(i);
-						node.minimaxMove(getNextTurn(nodeTurn));
-						if (node.getScore() * turn > max * turn) {
-				        	max = node.getScore();
-				            maxIndex = i;
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+		if (failure != null)
+			throw new RuntimeException(failure);
+		return budget.isCancelled() ? null : results;
+	}
+	
+	private int treeParallelMove(final MCTSNode curNode, final SearchBudget budget) 
+	// tree parallel MCTS, see PARALLEL_MODE
+	{
+		prepareSearchExecutor();
+		searchMode2Status = SEARCHMODE2STATUS.NOTMET;
+		minimax4K = 0;
+		searchBudget = budget;
+		
+		if (THREAT_MODE != 0) {
+			int move = threatSpaceMove(curNode, curNode.getGameState());
+			if (move >= 0)
+				return move;
+		}
+		
+		final AtomicInteger trials = new AtomicInteger(0);
+		final AtomicInteger decisiveMove = new AtomicInteger(-1);
+		ArrayList<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (int w = 0; w < NUMTHREADS; w++) {
+			final long seed = r.nextLong();
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					RolloutEngine engine = rolloutEngine.get();
+					engine.setRandom(new Random(seed));
+					BitBoard state = new BitBoard(curNode.getGameState()); // this thread's copy of the root game state
+					try {
+						while ((decisiveMove.get() < 0) && (curNode.getProvenWinner() == null) && 
+								!budget.isExhausted(trials.getAndIncrement())) {
+							long startTime = searchStatistics.beginTrial(engine);
+							curNode.runTrial(state);
+							searchStatistics.endTrial(engine, startTime);
+							if ( (SEARCH_MODE == 2) && (searchMode2Status == SEARCHMODE2STATUS.MET) ) {
+								// only one thread runs minimax; the others keep running roll outs meanwhile
+								synchronized (curNode) {
+									if (searchMode2Status != SEARCHMODE2STATUS.MET)
+										continue;
+									
+									int move = curNode.minimax_alphabeta(state);
+									
+									if ( (searchMode2Status == SEARCHMODE2STATUS.WIN) || 
+											((searchMode2Status == SEARCHMODE2STATUS.SOMEDEATH) && (minimax4K == 1)) )
+										decisiveMove.set(move);
+								}
+							}
 						}
+					} finally {
+						engine.setRandom(null);
 					}
-					score = max;
-					
-					return nextMoves.get(maxIndex).getindexFromParentNode();
+					return null;
 				}
+			});
+		}
+		
+		sharedTreeSearch = true;
+		try {
+			if (runSearchTasks(tasks, budget) == null)
+				return -1; // the search was cancelled, do not choose a move
+		} finally {
+			sharedTreeSearch = false;
+		}
+		
+		if (decisiveMove.get() >= 0)
+			return decisiveMove.get();
+		return curNode.selectMove();
+	}
+	
+	public synchronized void startPondering() 
+	// searches on while the person thinks, after the computer's move of the last choseTile() was played. 
+	// a background thread runs trials from the node reached by the chosen move, so the subtrees of the person's 
+	// replies grow; the next choseTile() stops it and reuses the subtree of the actual reply as its top node.
+	// the engine does not ponder unless the search keeps its tree (TREE_REUSE = 1); pondering ends after 
+	// PONDERROLLOUTS roll outs or 2^TRANSPOSITIONTABLEBITS new nodes, when the node is proven, or with 
+	// stopPondering() or choseTile()
+	{
+		stopPondering();
+		MCTSNode topNode = lastTopNode;
+		if ((topNode == null) || (lastChosenMove < 0) || (PONDERROLLOUTS <= 0))
+			return;
+		
+		final BitBoard state = new BitBoard(topNode.getGameState());
+		topNode.expand(state); // the search may have been decided before the top node was expanded
+		final MCTSNode node = topNode.findChild(lastChosenMove);
+		if ((node == null) || (node.getProvenWinner() != null))
+			return;
+		state.place(lastChosenMove, TURN.COMPUTER_TURN);
+		
+		final SearchStatistics statistics = new SearchStatistics(0); // the nodes of pondering are not counted for the last search
+		searchStatistics = statistics;
+		final int rollouts = PONDERROLLOUTS;
+		final long maxNodes = 1L << TRANSPOSITIONTABLEBITS;
+		ponderStopped = false;
+		ponderThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				rolloutEngine.get().setRandom(ponderRandom);
+				for (int i = 0; (i < rollouts) && !ponderStopped && (node.getProvenWinner() == null) && 
+						(statistics.getNodesAllocated() < maxNodes); i++)
+					node.runTrial(state);
+			}
+		}, "GameAlgorithm ponder");
+		ponderThread.setDaemon(true);
+		ponderThread.start();
+	}
+	
+	public synchronized void stopPondering() {
+		// waits for the trial the ponder thread is running, if any; the tree is then left to the caller
+		if (ponderThread == null)
+			return;
+		ponderStopped = true;
+		boolean interrupted = false;
+		while (ponderThread.isAlive()) {
+			try {
+				ponderThread.join();
+			} catch (InterruptedException e) {
+				interrupted = true;
 			}
-			
 		}
+		ponderThread = null;
+		if (interrupted)
+			Thread.currentThread().interrupt();
 	}
-
 	
+	@Override
+	public void close() 
+	// stops pondering and shuts down the threads of the parallel searches (NUMTHREADS > 1), which would otherwise 
+	// live as long as the program. the owner of the engine calls it when the engine is no longer used; 
+	// a later search starts new threads
+	{
+		stopPondering();
+		synchronized (this) {
+			if (minimaxPool != null)
+				minimaxPool.shutdown();
+			minimaxPool = null;
+		}
+		if (searchExecutor != null)
+			searchExecutor.shutdown();
+		searchExecutor = null;
+		if (rootWorkers != null) {
+			for (GameAlgorithm worker : rootWorkers)
+				worker.close();
+		}
+		rootWorkers = null;
+		// the RolloutEngine and ThreatSearch of a thread refer back to this engine, so the thread-local map 
+		// of the calling thread would keep the engine and its transposition table reachable
+		rolloutEngine.remove();
+		threatSearch.remove();
+	}
+	
+	private MCTSNode reuseTree(BitBoard rootState, int previousMove) 
+	// finds the node of the previous search tree that is reached by the computer's chosen move and the 
+	// person's reply previousMove, and makes it the top node. returns null if there is no such node or 
+	// if the table has changed in any other way (undo, reset)
+	{
+		MCTSNode oldTopNode = lastTopNode;
+		lastTopNode = null;
+		if ((oldTopNode == null) || (lastChosenMove < 0) || (previousMove < 0) || (previousMove >= GAMESTATELENGTH))
+			return null;
+		
+		BitBoard expected = new BitBoard(oldTopNode.getGameState());
+		if (!expected.isEmpty(lastChosenMove) || (lastChosenMove == previousMove))
+			return null;
+		expected.place(lastChosenMove, TURN.COMPUTER_TURN);
+		expected.place(previousMove, TURN.PERSON_TURN);
+		if (!expected.sameAs(rootState))
+			return null;
+		
+		MCTSNode child = oldTopNode.findChild(lastChosenMove);
+		MCTSNode node = (child == null) ? null : child.findChild(previousMove);
+		if (node == null)
+			return null;
+		node.promoteToTop(rootState);
+		return node;
+	}
 	
 	public int choseTile(int previousMove) {
+		return choseTile(previousMove, NUMROLLOUTSIMULATION, SEARCHTIMELIMIT);
+	}
+	
+	public int choseTile(int previousMove, int maxRollouts, long timeLimitMillis) 
+	// anytime search: the MCTS stops after maxRollouts roll outs or timeLimitMillis milliseconds 
+	// (0 means no time limit), whichever comes first, and returns the best move found so far
+	{
+		return search(previousMove, maxRollouts, timeLimitMillis).getMove();
+	}
+	
+	public int choseTile(int previousMove, int maxRollouts, long timeLimitMillis, CancellationToken token) 
+	// same as choseTile(int, int, long); returns -1 if the search is cancelled by token or by an interrupt of 
+	// the calling thread. the search stops within one roll out or minimax level, and all its threads have 
+	// stopped on return. the interrupt status of the calling thread is kept
+	{
+		return search(previousMove, maxRollouts, timeLimitMillis, token).getMove();
+	}
+	
+	public SearchStatistics search(int previousMove, int maxRollouts, long timeLimitMillis) {
+		return search(previousMove, maxRollouts, timeLimitMillis, new CancellationToken());
+	}
+	
+	public SearchStatistics search(int previousMove, int maxRollouts, long timeLimitMillis, CancellationToken token) 
+	// the search of choseTile(); returns the chosen move, -1 if the table is full or the search was cancelled, 
+	// with the statistics of the search. every search is also a SearchEvent
+	{
+		stopPondering(); // the pondered tree is then reused, see reuseTree()
+		SearchStatistics statistics = new SearchStatistics(GAMESTATELENGTH);
+		searchStatistics = statistics;
+		SearchEvent event = new SearchEvent();
+		event.begin();
+		SearchBudget budget = new SearchBudget(maxRollouts, timeLimitMillis, token);
+		int move = chooseMove(previousMove, budget);
+		if (budget.isCancelled()) {
+			move = -1;
+			statistics.cancelled = true;
+		}
+		statistics.finish(move);
+		event.end();
+		if (event.shouldCommit()) {
+			event.boardSize = n;
+			event.searchMode = SEARCH_MODE;
+			event.threads = NUMTHREADS;
+			event.move = statistics.getMove();
+			event.cancelled = statistics.isCancelled();
+			event.trials = statistics.getTrials();
+			event.rollouts = statistics.getRollouts();
+			event.rolloutsPerSecond = statistics.getRolloutsPerSecond();
+			event.nodesAllocated = statistics.getNodesAllocated();
+			event.maxTreeDepth = statistics.getMaxTreeDepth();
+			event.averageRolloutLength = statistics.getAverageRolloutLength();
+			event.minimaxCalls = statistics.getMinimaxCalls();
+			event.minimaxTime = statistics.getMinimaxNanos();
+			event.selectionTime = statistics.getSelectionNanos();
+			event.rolloutTime = statistics.getRolloutNanos();
+			event.backupTime = statistics.getBackupNanos();
+			event.commit();
+		}
+		return statistics;
+	}
+	
+	private int chooseMove(int previousMove, SearchBudget budget) {
 		
 		boolean alreadyFull = true;
 		for (int index = 0; index < GAMESTATELENGTH; index++) {
@@ -642,19 +3439,55 @@ public class GameAlgorithm {
 				return i;
 */
 
-			MCTSNode curNode = new MCTSNode(currentTable,TURN.COMPUTER_TURN, previousMove, 0);
+			// the search runs on a BitBoard; currentTable is only converted here at the API boundary
+			BitBoard rootState = new BitBoard(currentTable);
+			
+			boolean mcts = (SEARCH_MODE == 1) || (SEARCH_MODE == 2);
+			boolean treeParallel = mcts && (NUMTHREADS > 1) && (PARALLEL_MODE == 1);
+			boolean rootParallel = mcts && (NUMTHREADS > 1) && !treeParallel;
+			boolean pooled = mcts && (NUMTHREADS <= 1) && (TREE_MODE == 1);
+			boolean nodeTree = mcts && !rootParallel && !pooled; // the search builds an MCTSNode tree from curNode
+			
+			MCTSNode curNode = null;
+			prepareTranspositionTable(nodeTree);
+			if (nodeTree && (TREE_REUSE == 1))
+				curNode = reuseTree(rootState, previousMove);
+			if (curNode == null)
+				curNode = new MCTSNode(rootState,TURN.COMPUTER_TURN, previousMove, 0);
+			if (transpositionTable != null)
+				transpositionTable.findOrStore(curNode);
 			
 			// here one can choose to use minimax or Monte Carlo simulation algorithm
-			long startTime = System.currentTimeMillis();
+			searchBudget = budget;
 			
-			if ( (SEARCH_MODE == 1) || (SEARCH_MODE == 2) )
-				i = curNode.bestMCTSMove();
+			if (treeParallel)
+				i = treeParallelMove(curNode, budget);
+			else if (rootParallel)
+				i = rootParallelMove(rootState, previousMove, budget);
+			else if (pooled) {
+				if (nodePool == null)
+					nodePool = new MCTSNodePool();
+				i = nodePool.bestMCTSMove(curNode, budget);
+			}
+			else if (mcts)
+				i = curNode.bestMCTSMove(budget);
 			else // default (SEARCH_MODE == 0)
 				i = curNode.minimaxMove(TURN.COMPUTER_TURN);
 			
-			long estimatedTime = System.currentTimeMillis() - startTime;
+			if (pooled) 
+				searchStatistics.addRootVisits(nodePool);
+			else if (nodeTree)
+				searchStatistics.addRootVisits(curNode); // the root parallel workers add theirs, see rootParallelMove()
+			
+			if (nodeTree && (TREE_REUSE == 1) && !budget.isCancelled()) {
+				lastTopNode = curNode;
+				lastChosenMove = i;
+			}
+			else
+				lastTopNode = null;
+			if (transpositionTable != null)
+				transpositionTable.clear(); // a reused tree is stored again by promoteToTop()
 			
-			System.out.println("bestMCTSMove estimatedTime = " + estimatedTime);
 			return i;
 		}
 		
@@ -714,5 +3547,121 @@ public class GameAlgorithm {
 		return false;
 
 	}
+
+	public int movePrior(BitBoard state, int index, TURN turn) 
+	// cheap estimate of a move of turn at the empty index, used to order the child nodes with WIDENING_MODE = 1: 
+	// an immediate win, then the block of an immediate win of the opponent, then a four, then the number of 
+	// neighbouring tiles. state is unchanged on return
+	{
+		if (winsAt(state, index, turn))
+			return 40;
+		TURN opponent = (turn == TURN.COMPUTER_TURN) ? TURN.PERSON_TURN : TURN.COMPUTER_TURN;
+		if (winsAt(state, index, opponent))
+			return 30;
+		int prior = state.countNeighbors(index);
+		if (countThreats(state, index, turn, null) > 0)
+			prior += 10;
+		return prior;
+	}
+	
+	private void orderByPrior(BitBoard state, TURN turn, int[] moves) {
+		// sorts moves by movePrior() for turn, the highest first and the lowest index first among equal priors
+		long[] keys = new long[moves.length];
+		for (int i = 0; i < moves.length; i++)
+			keys[i] = ((long) -movePrior(state, moves[i], turn) << 32) | moves[i];
+		Arrays.sort(keys);
+		for (int i = 0; i < moves.length; i++)
+			moves[i] = (int) keys[i];
+	}
+
+	public boolean winsAt(BitBoard state, int index, TURN turn) {
+		// true if turn wins by placing a tile at the empty index; state is unchanged on return
+		state.place(index, turn);
+		boolean win = checkWinner(state, index);
+		state.remove(index);
+		return win;
+	}
+
+	public int countThreats(BitBoard state, int index, TURN turn, int[] tiles) 
+	// number of tiles, up to 2, where turn would win after placing a tile at the empty index, counting the runs 
+	// through index only; that is all of them if turn has no immediate win before. the tiles are stored in 
+	// tiles unless it is null. see buildWinTables()
+	{
+		long[] bits = state.bits;
+		int own = (turn == TURN.COMPUTER_TURN) ? 0 : BITBOARDWORDS;
+		int other = BITBOARDWORDS - own;
+		int threat = -1;
+		
+		for (int i = winCellStart[index]; i < winCellStart[index+1]; i++) {
+			// a window through index with COUNTWIN-2 tiles of turn and none of the opponent has one other empty tile
+			int first = winEntryWord[i];
+			int count = 0;
+			int empty = -1;
+			boolean blocked = false;
+			for (int k = 0; (k < winEntrySpan[i]) && !blocked; k++) {
+				long mask = winEntryMask[i * winMaskSlots + k];
+				blocked = ((bits[other + first + k] & mask) != 0);
+				count += Long.bitCount(bits[own + first + k] & mask);
+				long free = mask & ~bits[own + first + k];
+				if ((first + k) == (index >>> 6))
+					free &= ~(1L << index);
+				if (free != 0)
+					empty = ((first + k) << 6) + Long.numberOfTrailingZeros(free);
+			}
+			if (blocked || (count != COUNTWIN - 2))
+				continue;
+			if ((threat >= 0) && (threat != empty)) {
+				if (tiles != null) 
+					tiles[1] = empty;
+				return 2;
+			}
+			threat = empty;
+			if (tiles != null)
+				tiles[0] = empty;
+		}
+		return (threat >= 0) ? 1 : 0;
+	}
+
+	public boolean checkWinner(BitBoard state, int select) {
+		// table driven version of checkWinner(TILE_STATUS[], int) with the same results, 
+		// see buildWinTables()
+		
+		long[] bits = state.bits;
+		int side; // offset of the bitset holding the color at select, -1 if select is empty
+		
+		if ((bits[select >>> 6] & (1L << select)) != 0)
+			side = 0;
+		else if ((bits[BITBOARDWORDS + (select >>> 6)] & (1L << select)) != 0)
+			side = BITBOARDWORDS;
+		else 
+			side = -1;
+		
+		if ((COUNTWIN > 1) && (side >= 0)) {
+			int first = winNeighborWord[select];
+			boolean isolated = true;
+			for (int k = 0; (k < winNeighborSlots) && (first + k < BITBOARDWORDS) && isolated; k++) 
+				isolated = ((bits[side + first + k] & winNeighborMask[select * winNeighborSlots + k]) == 0);
+			if (isolated)
+				return false;
+		}
+		
+		for (int i = winCellStart[select]; i < winCellStart[select+1]; i++) {
+			int first = winEntryWord[i];
+			int span = winEntrySpan[i];
+			boolean filled = true;
+			for (int k = 0; (k < span) && filled; k++) {
+				long mask = winEntryMask[i * winMaskSlots + k];
+				long color;
+				if (side >= 0)
+					color = bits[side + first + k];
+				else 
+					color = ~(bits[first + k] | bits[BITBOARDWORDS + first + k]);
+				filled = ((color & mask) == mask);
+			}
+			if (filled)
+				return true;
+		}
+		return false;
+	}
 
 }
@@ -6,6 +6,8 @@ import java.awt.Dimension;
 import java.awt.Insets;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.net.URL;
 
 import javax.swing.ButtonGroup;
@@ -14,6 +16,7 @@ import javax.swing.JButton;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JRadioButton;
+import javax.swing.SwingUtilities;
 
 /**
  * TicTacToe Application class.
@@ -61,6 +64,7 @@ public class GomokuApp implements ActionListener {
 	
 	private GameAlgorithm algorithm = new GameAlgorithm(currentTable);
 	private Thread computerThread;
+	private int searchNumber; // incremented whenever a search of the computer is abandoned, so that its move is not played
 	
 	private int move;
 	
@@ -81,6 +85,12 @@ public class GomokuApp implements ActionListener {
 		JFrame guiFrame = new JFrame(); // make sure the program exits when the frame closes
 		
 		guiFrame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+		guiFrame.addWindowListener(new WindowAdapter() {
+			@Override
+			public void windowClosing(WindowEvent event) {
+				algorithm.close(); // stops pondering and the search threads
+			}
+		});
 		guiFrame.setBackground(Color.white);
 		guiFrame.setTitle("TicTacToe");
 		guiFrame.setSize(600, 400); // JUNYI: frame size
@@ -205,6 +215,7 @@ public class GomokuApp implements ActionListener {
 		undoBtn.addActionListener(new ActionListener() {
 			@Override
 			public void actionPerformed(ActionEvent event) {
+				stopComputer();
 				if (previousIndex != -1) {
 					currentTable[previousIndex] = TILE_STATUS.TILE_STATUS_EMPTY;
 					getBtn(previousIndex).setIcon(emptyIcon);
@@ -397,21 +408,19 @@ public class GomokuApp implements ActionListener {
 
 		//person vs computer
 		if (mSelectP2P == false && currentTurn == TURN.COMPUTER_TURN) {
-			if (computerThread != null && computerThread.isAlive()) {
-				computerThread.interrupt();
-				try {
-					Thread.sleep(1);
-				} catch (InterruptedException e) {
-					// TODO Auto-generated catch block
-					e.printStackTrace();
-				}
-			}
+			stopComputer();
 			
 			if (algorithm.checkWinner(currentTable, number) == false && noEmptyTile() == false) {
 				computerThread = new Thread(new ComputerRunnable());
 				computerThread.start();
 			}
 		}
+		
+		//person vs computer, the computer searches on while the person thinks
+		else if (mSelectP2P == false && currentTurn == TURN.PERSON_TURN) {
+			if (algorithm.checkWinner(currentTable, number) == false && noEmptyTile() == false)
+				algorithm.startPondering();
+		}
 	}
 
 	/**
@@ -500,6 +509,7 @@ public class GomokuApp implements ActionListener {
 	 * @param none
 	 */											
 	private void reset() {
+		stopComputer();
 		for (int index = 0; index < currentTable.length; index++) {
 			currentTable[index] = TILE_STATUS.TILE_STATUS_EMPTY;
 			getBtn(index).setIcon(emptyIcon);
@@ -513,22 +523,50 @@ public class GomokuApp implements ActionListener {
 
 
 	/**
-	 * person vs computer, computer makes tile selection after 500 milliseconds
+	 * stop the search of the computer and its pondering. 
+	 * the event thread does not wait for the search thread: it is interrupted, its move is not played, 
+	 * and the next search of the computer waits until it has ended
 	 *
+	 * @param none
+	 */											
+	private void stopComputer() {
+		searchNumber++;
+		if (computerThread != null)
+			computerThread.interrupt(); // the search stops within one roll out
+		algorithm.stopPondering();
+	}
+
+
+	/**
+	 * person vs computer, computer makes tile selection right away,
+	 * continuing the search it pondered while the person was thinking.
+	 * the move is played on the event thread, unless the search was 
+	 * abandoned meanwhile (Start, Undo)
 	 * 
 	 */												
 	private class ComputerRunnable implements Runnable {
+		private final int number = searchNumber;
+		private final Thread previousThread = computerThread; // an abandoned search that may still be stopping
+		
 		@Override
 		public void run() {
-			try {
-				Thread.sleep(500);
-			} catch (InterruptedException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
+			if (previousThread != null) {
+				try {
+					previousThread.join(); // the algorithm runs one search at a time
+				} catch (InterruptedException e) {
+					return; // this search is abandoned as well
+				}
 			}
-			JButton btn = computerSelect();
+			final JButton btn = computerSelect();
 			if (btn != null) {
-				btn.doClick();
+				SwingUtilities.invokeLater(new Runnable() {
+					@Override
+					public void run() {
+						if (number == searchNumber) {
+							btn.doClick();
+						}
+					}
+				});
 			}
 		}
 
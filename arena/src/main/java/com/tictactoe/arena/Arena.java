@@ -0,0 +1,206 @@
+package com.tictactoe.arena;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class Arena {
+	// headless self-play of GameAlgorithm configurations, see EngineConfig. every pair of configurations plays 
+	// -games games on a -size board; the games run in parallel on -threads threads (default: all cores). 
+	// games 2k and 2k+1 of a pair share the opening and swap the colours. reports per pair the score of the 
+	// first configuration with its 95% confidence interval and the Elo difference, and per configuration the 
+	// average time per move and the roll outs per second of its searches.
+	//   java -jar arena/target/arena.jar -games 1000 -size 9 "hybrid:SEARCH_MODE=2,time=200" "mcts:SEARCH_MODE=1,time=200"
+	// at equal time the comparison holds only if the searches do not compete for cores: 
+	// use -threads (cores / NUMTHREADS of the configurations) or fewer.
+	// SEARCH_MODE = 0 searches the whole game tree by minimax and is only practical on very small boards
+	
+	private static final double Z95 = 1.96;
+	
+	private static class Standing {
+		// the games of one pair, counted for configuration first
+		final EngineConfig first;
+		final EngineConfig second;
+		int wins;
+		int draws;
+		int losses;
+		
+		Standing(EngineConfig first, EngineConfig second) {
+			this.first = first;
+			this.second = second;
+		}
+		
+		int games() {
+			return wins + draws + losses;
+		}
+		
+		double score() {
+			return (wins + 0.5 * draws) / games();
+		}
+		
+		double halfInterval() {
+			// normal approximation, with the sample variance of the game scores 1, 1/2 and 0
+			int n = games();
+			if (n < 2)
+				return Double.NaN;
+			double m = score();
+			double variance = (wins * (1 - m) * (1 - m) + draws * (0.5 - m) * (0.5 - m) + losses * m * m) / (n - 1);
+			return Z95 * Math.sqrt(variance / n);
+		}
+	}
+	
+	private static class Totals {
+		// the searches of one configuration over all its games
+		long searchNanos;
+		long rollouts;
+		long searches;
+	}
+	
+	private static class Scheduled {
+		final Standing standing;
+		final boolean swapped; // true if standing.second moved first
+		final Game game;
+		
+		Scheduled(Standing standing, boolean swapped, Game game) {
+			this.standing = standing;
+			this.swapped = swapped;
+			this.game = game;
+		}
+	}
+	
+	public static void main(String[] args) throws InterruptedException {
+		int games = 100;
+		int size = 9;
+		int threads = Runtime.getRuntime().availableProcessors();
+		long seed = 1;
+		List<EngineConfig> configs = new ArrayList<EngineConfig>();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-games"))
+				games = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-size"))
+				size = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-threads"))
+				threads = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-seed"))
+				seed = Long.parseLong(args[++i]);
+			else if (args[i].startsWith("-")) {
+				usage();
+				return;
+			}
+			else
+				configs.add(EngineConfig.parse(args[i]));
+		}
+		if (configs.size() < 2) {
+			usage();
+			return;
+		}
+		
+		List<Standing> standings = new ArrayList<Standing>();
+		List<Scheduled> schedule = new ArrayList<Scheduled>();
+		for (int a = 0; a < configs.size(); a++) {
+			for (int b = a + 1; b < configs.size(); b++) {
+				Standing standing = new Standing(configs.get(a), configs.get(b));
+				standings.add(standing);
+				for (int g = 0; g < games; g++) {
+					boolean swapped = (g % 2 == 1);
+					long openingSeed = seed * 1000003 + g / 2;
+					long engineSeed = (seed * 1000003 + schedule.size()) * 31;
+					EngineConfig first = swapped ? standing.second : standing.first;
+					EngineConfig second = swapped ? standing.first : standing.second;
+					schedule.add(new Scheduled(standing, swapped, new Game(size, openingSeed, engineSeed, first, second)));
+				}
+			}
+		}
+		
+		Totals[] totals = new Totals[configs.size()];
+		for (int c = 0; c < totals.length; c++)
+			totals[c] = new Totals();
+		
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		CompletionService<Scheduled> completion = new ExecutorCompletionService<Scheduled>(executor);
+		for (final Scheduled scheduled : schedule) {
+			completion.submit(() -> {
+				scheduled.game.play();
+				return scheduled;
+			});
+		}
+		long startTime = System.nanoTime();
+		try {
+			for (int done = 1; done <= schedule.size(); done++) {
+				Scheduled scheduled = completion.take().get();
+				record(scheduled, configs, totals);
+				if ((done % Math.max(1, schedule.size() / 20) == 0) || (done == schedule.size()))
+					System.err.format(Locale.ROOT, "%d/%d games, %.0f s%n", done, schedule.size(), (System.nanoTime() - startTime) / 1e9);
+			}
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+		report(size, standings, configs, totals);
+	}
+	
+	private static void record(Scheduled scheduled, List<EngineConfig> configs, Totals[] totals) {
+		Game game = scheduled.game;
+		Standing standing = scheduled.standing;
+		int result = scheduled.swapped ? -game.getResult() : game.getResult(); // for standing.first
+		if (result == Game.WIN_FIRST)
+			standing.wins++;
+		else if (result == Game.WIN_SECOND)
+			standing.losses++;
+		else
+			standing.draws++;
+		
+		for (int side = 0; side < 2; side++) {
+			EngineConfig config = ((side == 0) != scheduled.swapped) ? standing.first : standing.second;
+			Totals total = totals[configs.indexOf(config)];
+			total.searchNanos += game.getSearchNanos(side);
+			total.rollouts += game.getRollouts(side);
+			total.searches += game.getSearches(side);
+		}
+	}
+	
+	private static void report(int size, List<Standing> standings, List<EngineConfig> configs, Totals[] totals) {
+		System.out.format(Locale.ROOT, "board %dx%d%n", size, size);
+		System.out.format(Locale.ROOT, "%-30s %6s %6s %6s %6s %7s %17s %7s%n", 
+				"pair", "games", "wins", "draws", "losses", "score", "95% interval", "elo");
+		for (Standing standing : standings) {
+			double score = standing.score();
+			double half = standing.halfInterval();
+			System.out.format(Locale.ROOT, "%-30s %6d %6d %6d %6d %7.3f %8.3f..%-7.3f %7s%n", 
+					standing.first.getName() + " vs " + standing.second.getName(), standing.games(), 
+					standing.wins, standing.draws, standing.losses, score, 
+					Math.max(0, score - half), Math.min(1, score + half), elo(score));
+		}
+		System.out.println();
+		System.out.format(Locale.ROOT, "%-20s %9s %10s %12s  %s%n", "engine", "moves", "ms/move", "rollouts/s", "settings");
+		for (int c = 0; c < configs.size(); c++) {
+			Totals total = totals[c];
+			System.out.format(Locale.ROOT, "%-20s %9d %10.1f %12.0f  %s%n", configs.get(c).getName(), total.searches, 
+					(total.searches == 0) ? 0 : total.searchNanos / 1e6 / total.searches, 
+					(total.searchNanos == 0) ? 0 : total.rollouts * 1e9 / total.searchNanos, configs.get(c));
+		}
+	}
+	
+	private static String elo(double score) {
+		// Elo difference of a score
+		if (score <= 0)
+			return "-inf";
+		if (score >= 1)
+			return "+inf";
+		long elo = Math.round(-400 * Math.log10(1 / score - 1));
+		return (elo == 0) ? "0" : String.format(Locale.ROOT, "%+d", elo); // no "-0" for an even score
+	}
+	
+	private static void usage() {
+		System.err.println("usage: arena [-games n] [-size n] [-threads n] [-seed n] config config [config ...]");
+		System.err.println("  config: name:key=value,... with the keys rollouts, time (ms per move) and the public");
+		System.err.println("  int, long and float settings of GameAlgorithm, e.g. SEARCH_MODE, NODE_SELECTION_MODE,");
+		System.err.println("  NUMSIMULATIONDEPTH. every pair of configs plays n games, colours alternate");
+	}
+}
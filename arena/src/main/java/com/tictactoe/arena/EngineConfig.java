@@ -0,0 +1,115 @@
+package com.tictactoe.arena;
+
+import com.tictactoe.GameAlgorithm;
+import com.tictactoe.GomokuApp.TILE_STATUS;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class EngineConfig {
+	// an engine configuration of the arena, written as name:key=value,key=value,...
+	//   rollouts  roll out budget per move (default NUMROLLOUTSIMULATION)
+	//   time      time limit per move in milliseconds, 0 means none (default 0); 
+	//             games at equal time give every configuration the same time and a large roll out budget
+	//   any other key is a public int, long or float setting of GameAlgorithm, 
+	//   e.g. SEARCH_MODE, NODE_SELECTION_MODE, NUMSIMULATIONDEPTH, NUMTHREADS, ROLLOUT_MODE
+	// e.g. "mcts:SEARCH_MODE=1,time=200" or "hybrid:SEARCH_MODE=2,NUMSIMULATIONDEPTH=6,rollouts=5000"
+	
+	private final String name;
+	private final Map<String, String> settings = new LinkedHashMap<String, String>();
+	private int rollouts = -1;
+	private long timeLimitMillis = 0;
+	
+	private EngineConfig(String name) {
+		this.name = name;
+	}
+	
+	public static EngineConfig parse(String text) {
+		int colon = text.indexOf(':');
+		EngineConfig config = new EngineConfig((colon < 0) ? text : text.substring(0, colon));
+		String list = (colon < 0) ? "" : text.substring(colon + 1);
+		for (String entry : list.split(",")) {
+			if (entry.trim().isEmpty())
+				continue;
+			int equals = entry.indexOf('=');
+			if (equals < 0)
+				throw new IllegalArgumentException("expected key=value in " + text + ": " + entry);
+			String key = entry.substring(0, equals).trim();
+			String value = entry.substring(equals + 1).trim();
+			if (key.equals("rollouts"))
+				config.rollouts = Integer.parseInt(value);
+			else if (key.equals("time"))
+				config.timeLimitMillis = Long.parseLong(value);
+			else {
+				settingField(key); // unknown settings are reported before any game is played
+				config.settings.put(key, value);
+			}
+		}
+		return config;
+	}
+	
+	public GameAlgorithm create(TILE_STATUS[] table, long seed) {
+		// a GameAlgorithm with this configuration, playing the computer tiles of table
+		GameAlgorithm algorithm = new GameAlgorithm(table, seed);
+		for (Map.Entry<String, String> setting : settings.entrySet()) {
+			Field field = settingField(setting.getKey());
+			try {
+				if (field.getType() == int.class)
+					field.setInt(algorithm, Integer.parseInt(setting.getValue()));
+				else if (field.getType() == long.class)
+					field.setLong(algorithm, Long.parseLong(setting.getValue()));
+				else
+					field.setFloat(algorithm, Float.parseFloat(setting.getValue()));
+			} catch (IllegalAccessException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+		return algorithm;
+	}
+	
+	private static Field settingField(String key) {
+		try {
+			Field field = GameAlgorithm.class.getField(key);
+			Class<?> type = field.getType();
+			if (Modifier.isStatic(field.getModifiers()) || Modifier.isFinal(field.getModifiers()) || 
+					((type != int.class) && (type != long.class) && (type != float.class)))
+				throw new IllegalArgumentException("not a setting of GameAlgorithm: " + key);
+			return field;
+		} catch (NoSuchFieldException e) {
+			throw new IllegalArgumentException("no setting " + key + " in GameAlgorithm");
+		}
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	public int getRollouts(GameAlgorithm algorithm) {
+		return (rollouts < 0) ? algorithm.NUMROLLOUTSIMULATION : rollouts;
+	}
+	
+	public long getTimeLimitMillis() {
+		return timeLimitMillis;
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder text = new StringBuilder(name).append(':');
+		String separator = "";
+		if (rollouts >= 0) {
+			text.append("rollouts=").append(rollouts);
+			separator = ",";
+		}
+		if (timeLimitMillis > 0) {
+			text.append(separator).append("time=").append(timeLimitMillis);
+			separator = ",";
+		}
+		for (Map.Entry<String, String> setting : settings.entrySet()) {
+			text.append(separator).append(setting.getKey()).append('=').append(setting.getValue());
+			separator = ",";
+		}
+		return text.toString();
+	}
+}
@@ -0,0 +1,98 @@
+package com.tictactoe.arena;
+
+import com.tictactoe.GameAlgorithm;
+import com.tictactoe.GomokuApp.TILE_STATUS;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class Game {
+	// one game of the arena between two engine configurations. first makes the opening move, a tile next to 
+	// the centre chosen by openingSeed, and then the engines alternate. each engine sees the board from its side: 
+	// its own tiles are the computer tiles of its table
+
+	public static final int WIN_FIRST = 1;
+	public static final int WIN_SECOND = -1;
+	public static final int DRAW = 0;
+	
+	private final int size;
+	private final long openingSeed;
+	private final long engineSeed;
+	private final EngineConfig[] configs;
+	
+	private int result;
+	private int moves;
+	private final long[] searchNanos = new long[2];
+	private final long[] rollouts = new long[2];
+	private final int[] searches = new int[2];
+	
+	public Game(int size, long openingSeed, long engineSeed, EngineConfig first, EngineConfig second) {
+		this.size = size;
+		this.openingSeed = openingSeed;
+		this.engineSeed = engineSeed;
+		configs = new EngineConfig[] {first, second};
+	}
+	
+	public Game play() {
+		TILE_STATUS[][] tables = new TILE_STATUS[2][size * size];
+		for (TILE_STATUS[] table : tables)
+			Arrays.fill(table, TILE_STATUS.TILE_STATUS_EMPTY);
+		GameAlgorithm[] engines = new GameAlgorithm[2];
+		try {
+			for (int side = 0; side < 2; side++)
+				engines[side] = configs[side].create(tables[side], engineSeed * 2 + side);
+		
+			Random r = new Random(openingSeed);
+			int move = (size / 2 - 1 + r.nextInt(3)) * size + (size / 2 - 1 + r.nextInt(3));
+			int side = 0;
+			result = DRAW;
+			for (moves = 1; ; moves++) {
+				tables[side][move] = TILE_STATUS.TILE_STATUS_COMPUTER;
+				tables[1 - side][move] = TILE_STATUS.TILE_STATUS_PERSON;
+				if (engines[side].checkWinner(tables[side], move)) {
+					result = (side == 0) ? WIN_FIRST : WIN_SECOND;
+					return this;
+				}
+				if (moves == size * size)
+					return this;
+			
+				side = 1 - side;
+				GameAlgorithm.SearchStatistics statistics = engines[side].search(move, 
+						configs[side].getRollouts(engines[side]), configs[side].getTimeLimitMillis());
+				searchNanos[side] += statistics.getElapsedNanos();
+				rollouts[side] += statistics.getRollouts();
+				searches[side]++;
+				move = statistics.getMove();
+				if ((move < 0) || (tables[side][move] != TILE_STATUS.TILE_STATUS_EMPTY))
+					throw new IllegalStateException(configs[side].getName() + " chose the illegal move " + move);
+			}
+		}
+		finally {
+			// the engines of a parallel configuration hold search threads
+			for (GameAlgorithm engine : engines) {
+				if (engine != null)
+					engine.close();
+			}
+		}
+	}
+	
+	public int getResult() {
+		return result;
+	}
+	
+	public int getMoves() {
+		return moves;
+	}
+	
+	public long getSearchNanos(int side) {
+		return searchNanos[side];
+	}
+	
+	public long getRollouts(int side) {
+		return rollouts[side];
+	}
+	
+	public int getSearches(int side) {
+		return searches[side];
+	}
+}
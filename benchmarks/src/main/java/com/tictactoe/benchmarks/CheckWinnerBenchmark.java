@@ -0,0 +1,42 @@
+package com.tictactoe.benchmarks;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CheckWinnerBenchmark extends PositionState {
+	// checkWinner() on the BitBoard, called in turn for every occupied tile of the position
+	
+	private int[] tiles;
+	private int next;
+	
+	@Override
+	protected void setUp() {
+		int count = 0;
+		tiles = new int[table.length];
+		for (int index = 0; index < table.length; index++) {
+			if (!state.isEmpty(index))
+				tiles[count++] = index;
+		}
+		tiles = Arrays.copyOf(tiles, count);
+	}
+	
+	@Benchmark
+	public boolean checkWinner() {
+		int tile = tiles[next];
+		next = (next + 1 == tiles.length) ? 0 : next + 1;
+		return algorithm.checkWinner(state, tile);
+	}
+}
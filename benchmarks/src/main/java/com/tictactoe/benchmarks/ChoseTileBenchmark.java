@@ -0,0 +1,35 @@
+package com.tictactoe.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ChoseTileBenchmark extends PositionState {
+	// a full move of the computer, choseTile() with a budget of rollouts roll outs and no time limit.
+	// TREE_REUSE is off, so every call searches the position from scratch
+	
+	@Param({"3000"})
+	public int rollouts;
+	
+	@Override
+	protected void setUp() {
+		algorithm.TREE_REUSE = 0;
+	}
+	
+	@Benchmark
+	public int choseTile() {
+		return algorithm.choseTile(lastMove, rollouts, 0);
+	}
+}
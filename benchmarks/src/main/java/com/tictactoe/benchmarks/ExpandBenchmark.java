@@ -0,0 +1,40 @@
+package com.tictactoe.benchmarks;
+
+import com.tictactoe.GameAlgorithm;
+import com.tictactoe.GomokuApp.TURN;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExpandBenchmark extends PositionState {
+	// expand() of a new top node: candidate moves, their ordering by the prior (widening = 1) and the children.
+	// widening is the WIDENING_MODE
+	
+	@Param({"0", "1"})
+	public int widening;
+	
+	@Override
+	protected void setUp() {
+		algorithm.WIDENING_MODE = widening;
+	}
+	
+	@Benchmark
+	public GameAlgorithm.MCTSNode expand() {
+		GameAlgorithm.MCTSNode node = algorithm.new MCTSNode(state, TURN.COMPUTER_TURN, lastMove, 0);
+		node.expand();
+		return node;
+	}
+}
@@ -0,0 +1,36 @@
+package com.tictactoe.benchmarks;
+
+import com.tictactoe.GameAlgorithm;
+import com.tictactoe.GomokuApp.TURN;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MinimaxBenchmark extends PositionState {
+	// the minimax check of the top node, minimax_alphabeta() down MINIMAXDEPTH levels
+	// (it replaced the fixed four level minimax_level4()). the state is unchanged on return
+	
+	private GameAlgorithm.MCTSNode node;
+	
+	@Override
+	protected void setUp() {
+		node = algorithm.new MCTSNode(state, TURN.COMPUTER_TURN, lastMove, 0);
+	}
+	
+	@Benchmark
+	public int minimax() {
+		return node.minimax_alphabeta(state);
+	}
+}
@@ -0,0 +1,45 @@
+package com.tictactoe.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ParallelBenchmark extends PositionState {
+	// scaling of the parallel searches: a full move of the computer with a budget of rollouts roll outs, 
+	// shared by threads threads. parallelMode is the PARALLEL_MODE, 0 root parallel and 1 tree parallel.
+	// the throughput times rollouts is the roll out rate; threads = 1 is the single threaded search of either mode
+	
+	@Param({"1", "2", "4", "8", "16", "32", "64"})
+	public int threads;
+	
+	@Param({"0", "1"})
+	public int parallelMode;
+	
+	@Param({"5000"})
+	public int rollouts;
+	
+	@Override
+	protected void setUp() {
+		algorithm.TREE_REUSE = 0;
+		algorithm.EARLYSTOP_MODE = 0; // every search runs its full budget
+		algorithm.NUMTHREADS = threads;
+		algorithm.PARALLEL_MODE = parallelMode;
+	}
+	
+	@Benchmark
+	public int choseTile() {
+		return algorithm.choseTile(lastMove, rollouts, 0);
+	}
+}
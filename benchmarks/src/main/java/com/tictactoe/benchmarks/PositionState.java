@@ -0,0 +1,51 @@
+package com.tictactoe.benchmarks;
+
+import com.tictactoe.GameAlgorithm;
+import com.tictactoe.GomokuApp.TILE_STATUS;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+@State(Scope.Thread)
+public abstract class PositionState {
+	// the board size and the fixed position of a benchmark, see Positions. 
+	// the algorithm is seeded, so every run of a benchmark plays the same roll outs
+
+	public static final long SEED = 1;
+	
+	@Param({"9", "15", "19"})
+	public int size;
+	
+	@Param({Positions.OPENING, Positions.MIDGAME, Positions.TACTICAL})
+	public String position;
+	
+	protected TILE_STATUS[] table;
+	protected int lastMove;
+	protected GameAlgorithm algorithm;
+	protected GameAlgorithm.BitBoard state;
+	
+	@Setup(Level.Trial)
+	public void setUpPosition() {
+		Positions fixed = Positions.create(size, position);
+		table = fixed.getTable();
+		lastMove = fixed.getLastMove();
+		algorithm = new GameAlgorithm(table, SEED);
+		state = algorithm.new BitBoard(table);
+		setUp();
+	}
+	
+	protected void setUp()
+	// set up of a benchmark after the position. JMH does not order the @Setup methods of a class and its 
+	// superclass, so the benchmarks override this instead
+	{
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		algorithm.close();
+	}
+}
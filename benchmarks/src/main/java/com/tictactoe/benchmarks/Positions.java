@@ -0,0 +1,115 @@
+package com.tictactoe.benchmarks;
+
+import com.tictactoe.GameAlgorithm;
+import com.tictactoe.GomokuApp.TILE_STATUS;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public final class Positions {
+	// fixed positions of the benchmarks. in every position the person made the last move and the computer is to move.
+	//   opening:  three stones at the centre of the board
+	//   midgame:  stones played alternately at random near the centre from a fixed seed, without a four or five
+	//   tactical: a few stones from a fixed seed around a person open three on the centre row, which the computer 
+	//             has to answer, so the threat search and the minimax check take part in the search
+
+	public static final String OPENING = "opening";
+	public static final String MIDGAME = "midgame";
+	public static final String TACTICAL = "tactical";
+	
+	private final int size;
+	private final TILE_STATUS[] table;
+	private int lastMove = -1;
+	
+	private Positions(int size) {
+		this.size = size;
+		table = new TILE_STATUS[size * size];
+		Arrays.fill(table, TILE_STATUS.TILE_STATUS_EMPTY);
+	}
+	
+	public static Positions create(int size, String kind) {
+		Positions position = new Positions(size);
+		Random r = new Random(31L * size + kind.hashCode()); // the same seed for the same size and kind on every run
+		int centre = size / 2;
+		
+		if (OPENING.equals(kind)) {
+			position.play(centre, centre, TILE_STATUS.TILE_STATUS_PERSON);
+			position.play(centre - 1, centre + 1, TILE_STATUS.TILE_STATUS_COMPUTER);
+			position.play(centre + 1, centre, TILE_STATUS.TILE_STATUS_PERSON);
+		}
+		else if (MIDGAME.equals(kind)) {
+			int radius = size / 4 + 1;
+			for (int i = 0; i < size; i++) {
+				position.playRandom(r, radius, TILE_STATUS.TILE_STATUS_PERSON);
+				position.playRandom(r, radius, TILE_STATUS.TILE_STATUS_COMPUTER);
+			}
+			position.playRandom(r, radius, TILE_STATUS.TILE_STATUS_PERSON);
+		}
+		else if (TACTICAL.equals(kind)) {
+			int radius = size / 4 + 1;
+			position.play(centre, centre - 1, TILE_STATUS.TILE_STATUS_PERSON);
+			position.play(centre + 1, centre, TILE_STATUS.TILE_STATUS_COMPUTER);
+			position.play(centre, centre, TILE_STATUS.TILE_STATUS_PERSON);
+			position.play(centre - 1, centre + 1, TILE_STATUS.TILE_STATUS_COMPUTER);
+			for (int i = 0; i < size / 3; i++) {
+				position.playRandom(r, radius, TILE_STATUS.TILE_STATUS_PERSON);
+				position.playRandom(r, radius, TILE_STATUS.TILE_STATUS_COMPUTER);
+			}
+			position.play(centre, centre + 1, TILE_STATUS.TILE_STATUS_PERSON); // the open three
+		}
+		else
+			throw new IllegalArgumentException("unknown position " + kind);
+		return position;
+	}
+	
+	public TILE_STATUS[] getTable() {
+		return Arrays.copyOf(table, table.length);
+	}
+	
+	public int getLastMove() {
+		return lastMove;
+	}
+	
+	private void play(int row, int column, TILE_STATUS tile) {
+		lastMove = row * size + column;
+		table[lastMove] = tile;
+	}
+	
+	private void playRandom(Random r, int radius, TILE_STATUS tile) 
+	// plays an empty tile within radius of the centre which does not make a four or five, so that neither side 
+	// wins on its next move, and stays off the centre row segment kept free for the open three of the tactical position
+	{
+		GameAlgorithm algorithm = new GameAlgorithm(table);
+		int centre = size / 2;
+		while (true) {
+			int row = centre - radius + r.nextInt(2 * radius + 1);
+			int column = centre - radius + r.nextInt(2 * radius + 1);
+			int index = row * size + column;
+			if ((table[index] != TILE_STATUS.TILE_STATUS_EMPTY) || 
+					((row == centre) && (Math.abs(column - centre) <= 3)))
+				continue;
+			table[index] = tile;
+			if (algorithm.checkWinner(table, index) || makesFour(algorithm, tile)) {
+				table[index] = TILE_STATUS.TILE_STATUS_EMPTY;
+				continue;
+			}
+			lastMove = index;
+			return;
+		}
+	}
+	
+	private boolean makesFour(GameAlgorithm algorithm, TILE_STATUS tile) 
+	// true if tile wins with one more stone
+	{
+		for (int index = 0; index < table.length; index++) {
+			if (table[index] != TILE_STATUS.TILE_STATUS_EMPTY)
+				continue;
+			table[index] = tile;
+			boolean won = algorithm.checkWinner(table, index);
+			table[index] = TILE_STATUS.TILE_STATUS_EMPTY;
+			if (won)
+				return true;
+		}
+		return false;
+	}
+}
@@ -0,0 +1,39 @@
+package com.tictactoe.benchmarks;
+
+import com.tictactoe.GameAlgorithm;
+import com.tictactoe.GomokuApp.TURN;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RolloutBenchmark extends PositionState {
+	// one roll out simulation, simulateFrom(), from the position with the current ROLLOUT_MODE.
+	// the roll out plays on a copy, because it leaves the state at the end of the game
+	
+	private GameAlgorithm.MCTSNode node;
+	private GameAlgorithm.BitBoard scratch;
+	
+	@Override
+	protected void setUp() {
+		node = algorithm.new MCTSNode(state, TURN.COMPUTER_TURN, lastMove, 0);
+		scratch = algorithm.new BitBoard(state);
+	}
+	
+	@Benchmark
+	public TURN simulateFrom() {
+		scratch.copyFrom(state);
+		return node.simulateFrom(scratch, TURN.COMPUTER_TURN, lastMove);
+	}
+}
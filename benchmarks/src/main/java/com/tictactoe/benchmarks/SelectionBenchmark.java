@@ -0,0 +1,39 @@
+package com.tictactoe.benchmarks;
+
+import com.tictactoe.GameAlgorithm;
+import com.tictactoe.GomokuApp.TURN;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SelectionBenchmark extends PositionState {
+	// bestUCTSelection() at a top node whose children carry the statistics of a short search
+	
+	public static final int SEARCHROLLOUTS = 2000;
+	
+	private GameAlgorithm.MCTSNode node;
+	
+	@Override
+	protected void setUp() {
+		node = algorithm.new MCTSNode(state, TURN.COMPUTER_TURN, lastMove, 0);
+		node.expand(); // the search may answer a threat without expanding the top node
+		node.bestMCTSMove(new GameAlgorithm.SearchBudget(SEARCHROLLOUTS, 0));
+	}
+	
+	@Benchmark
+	public GameAlgorithm.MCTSNode bestUCTSelection() {
+		return node.bestUCTSelection();
+	}
+}
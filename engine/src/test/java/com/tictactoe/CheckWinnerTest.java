@@ -0,0 +1,71 @@
+package com.tictactoe;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.tictactoe.GomokuApp.TILE_STATUS;
+
+public class CheckWinnerTest {
+	// checkWinner(BitBoard, int), built on the win window tables, against the direction scan of 
+	// checkWinner(TILE_STATUS[], int) on random tables of every board size, for every tile including the empty ones
+
+	private static final TILE_STATUS[] TILES = TILE_STATUS.values();
+	
+	@Test
+	public void tableVersionMatchesScan() {
+		Random r = new Random(2016);
+		for (int n = 5; n <= 19; n++) {
+			TILE_STATUS[] table = new TILE_STATUS[n * n];
+			GameAlgorithm algorithm = new GameAlgorithm(table);
+			for (int board = 0; board < 300; board++) {
+				// from nearly empty to nearly full tables, so that both short and long runs occur
+				double fill = r.nextDouble();
+				Arrays.fill(table, TILE_STATUS.TILE_STATUS_EMPTY);
+				for (int index = 0; index < table.length; index++) {
+					if (r.nextDouble() < fill)
+						table[index] = r.nextBoolean() ? TILE_STATUS.TILE_STATUS_PERSON : TILE_STATUS.TILE_STATUS_COMPUTER;
+				}
+				GameAlgorithm.BitBoard state = algorithm.new BitBoard(table);
+				for (int index = 0; index < table.length; index++) {
+					assertEquals(algorithm.checkWinner(table, index), algorithm.checkWinner(state, index), 
+							"n=" + n + " board=" + board + " tile=" + index + " " + Arrays.toString(table));
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void longRunsMatchScan() {
+		// runs of one color through a random tile in every direction, longer and shorter than COUNTWIN
+		Random r = new Random(2017);
+		int[][] directions = {{1, 0}, {0, 1}, {1, 1}, {-1, 1}};
+		for (int n = 5; n <= 19; n++) {
+			TILE_STATUS[] table = new TILE_STATUS[n * n];
+			GameAlgorithm algorithm = new GameAlgorithm(table);
+			for (int board = 0; board < 300; board++) {
+				Arrays.fill(table, TILE_STATUS.TILE_STATUS_EMPTY);
+				TILE_STATUS color = TILES[r.nextInt(TILES.length)];
+				int[] direction = directions[r.nextInt(directions.length)];
+				int x = r.nextInt(n);
+				int y = r.nextInt(n);
+				int length = 1 + r.nextInt(8);
+				for (int k = 0; k < length; k++) {
+					int tx = x + k * direction[0];
+					int ty = y + k * direction[1];
+					if ((tx < 0) || (tx >= n) || (ty >= n))
+						break;
+					table[ty * n + tx] = color;
+				}
+				GameAlgorithm.BitBoard state = algorithm.new BitBoard(table);
+				for (int index = 0; index < table.length; index++) {
+					assertEquals(algorithm.checkWinner(table, index), algorithm.checkWinner(state, index), 
+							"n=" + n + " board=" + board + " tile=" + index + " " + Arrays.toString(table));
+				}
+			}
+		}
+	}
+}
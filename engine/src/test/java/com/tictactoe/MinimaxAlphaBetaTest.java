@@ -0,0 +1,166 @@
+package com.tictactoe;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.tictactoe.GameAlgorithm.SEARCHMODE2STATUS;
+import com.tictactoe.GomokuApp.TILE_STATUS;
+import com.tictactoe.GomokuApp.TURN;
+
+public class MinimaxAlphaBetaTest {
+	// minimax_alphabeta() against a full width minimax without pruning or move ordering, the loops of the old 
+	// minimax_level4 for any depth, on random positions: the status, the returned move and the minimax4Moves 
+	// must be the same. NEIGHBOURDISTANCE = 0, so that both search all the empty tiles as the old loops did
+
+	@Test
+	public void depth2() {
+		compare(2, 5, 300);
+		compare(2, 6, 300);
+	}
+	
+	@Test
+	public void depth3() {
+		compare(3, 5, 300);
+		compare(3, 6, 150);
+	}
+	
+	@Test
+	public void depth4() {
+		compare(4, 5, 200);
+		compare(4, 6, 40);
+	}
+	
+	private void compare(int depth, int n, int positions) {
+		Random r = new Random(depth * 100 + n);
+		TILE_STATUS[] table = new TILE_STATUS[n * n];
+		int[] statusCounts = new int[SEARCHMODE2STATUS.values().length];
+		for (int position = 0; position < positions; position++) {
+			randomPosition(r, table, n);
+			GameAlgorithm algorithm = new GameAlgorithm(table);
+			algorithm.NEIGHBOURDISTANCE = 0;
+			algorithm.MINIMAXDEPTH = depth;
+			GameAlgorithm.BitBoard state = algorithm.new BitBoard(table);
+			int move = algorithm.new MCTSNode(state, TURN.COMPUTER_TURN, -1, 0).minimax_alphabeta(state);
+			
+			Reference expected = new Reference(algorithm, table, depth);
+			String message = "depth=" + depth + " n=" + n + " position=" + position + " " + Arrays.toString(table);
+			assertEquals(expected.status, algorithm.searchMode2Status, message);
+			assertEquals(expected.move, move, message);
+			if (expected.status != SEARCHMODE2STATUS.WIN)
+				assertArrayEquals(expected.moves, algorithm.getMinimaxMoves(), message);
+			statusCounts[expected.status.ordinal()]++;
+		}
+		// the positions have to reach every outcome, or the comparison proves little
+		assertTrue(statusCounts[SEARCHMODE2STATUS.WIN.ordinal()] > 0, "no WIN position");
+		assertTrue(statusCounts[SEARCHMODE2STATUS.SOMEDEATH.ordinal()] > 0, "no SOMEDEATH position");
+		assertTrue(statusCounts[SEARCHMODE2STATUS.NODEATHORALLDEATH.ordinal()] > 0, "no NODEATHORALLDEATH position");
+	}
+	
+	private static void randomPosition(Random r, TILE_STATUS[] table, int n) {
+		// a position without five in a row, the person has made the last move
+		GameAlgorithm algorithm = new GameAlgorithm(table);
+		while (true) {
+			Arrays.fill(table, TILE_STATUS.TILE_STATUS_EMPTY);
+			int stones = 2 * (2 + r.nextInt(n * n / 3));
+			boolean won = false;
+			for (int i = 0; (i < stones) && !won; i++) {
+				int index;
+				do {
+					index = r.nextInt(table.length);
+				} while (table[index] != TILE_STATUS.TILE_STATUS_EMPTY);
+				table[index] = (i % 2 == 0) ? TILE_STATUS.TILE_STATUS_COMPUTER : TILE_STATUS.TILE_STATUS_PERSON;
+				won = algorithm.checkWinner(table, index);
+			}
+			if (!won)
+				return;
+		}
+	}
+	
+	private static class Reference {
+		// the minimax check by brute force on the TILE_STATUS[] table
+		
+		private final GameAlgorithm algorithm;
+		private final TILE_STATUS[] table;
+		SEARCHMODE2STATUS status;
+		int move;
+		int[] moves;
+		
+		Reference(GameAlgorithm algorithm, TILE_STATUS[] table, int depth) {
+			this.algorithm = algorithm;
+			this.table = table;
+			
+			for (int index = 0; index < table.length; index++) {
+				if (table[index] == TILE_STATUS.TILE_STATUS_EMPTY) {
+					table[index] = TILE_STATUS.TILE_STATUS_COMPUTER;
+					boolean wins = algorithm.checkWinner(table, index);
+					table[index] = TILE_STATUS.TILE_STATUS_EMPTY;
+					if (wins) {
+						status = SEARCHMODE2STATUS.WIN;
+						move = index;
+						return;
+					}
+				}
+			}
+			
+			int best = -1; // value of level 1 for computer
+			int worst = 1;
+			ArrayList<Integer> bestMoves = new ArrayList<Integer>();
+			for (int index = 0; index < table.length; index++) {
+				if (table[index] != TILE_STATUS.TILE_STATUS_EMPTY)
+					continue;
+				table[index] = TILE_STATUS.TILE_STATUS_COMPUTER;
+				int value = -value(TILE_STATUS.TILE_STATUS_PERSON, depth - 1);
+				table[index] = TILE_STATUS.TILE_STATUS_EMPTY;
+				if (value > best) {
+					best = value;
+					bestMoves.clear();
+				}
+				if (value == best)
+					bestMoves.add(index);
+				worst = Math.min(worst, value);
+			}
+			
+			moves = new int[bestMoves.size()];
+			for (int i = 0; i < moves.length; i++)
+				moves[i] = bestMoves.get(i);
+			if (worst > -1)
+				move = -1; // no sudden-death
+			else if (best == -1)
+				move = -2; // every move leads to sudden-death
+			else
+				move = moves[0];
+			status = (move < 0) ? SEARCHMODE2STATUS.NODEATHORALLDEATH : SEARCHMODE2STATUS.SOMEDEATH;
+		}
+		
+		private int value(TILE_STATUS tile, int depth) {
+			// value for the player of tile, who is to move, within depth levels: 1 win, -1 loss, 0 no decision
+			if (depth <= 0)
+				return 0;
+			TILE_STATUS other = (tile == TILE_STATUS.TILE_STATUS_COMPUTER) ? 
+					TILE_STATUS.TILE_STATUS_PERSON : TILE_STATUS.TILE_STATUS_COMPUTER;
+			int best = -1;
+			boolean moved = false;
+			for (int index = 0; index < table.length; index++) {
+				if (table[index] != TILE_STATUS.TILE_STATUS_EMPTY)
+					continue;
+				moved = true;
+				table[index] = tile;
+				int value;
+				if (algorithm.checkWinner(table, index))
+					value = 1;
+				else
+					value = -value(other, depth - 1);
+				table[index] = TILE_STATUS.TILE_STATUS_EMPTY;
+				best = Math.max(best, value);
+			}
+			return moved ? best : 0; // a full table is a draw
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package com.tictactoe;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import com.tictactoe.GameAlgorithm.BitBoard;
+import com.tictactoe.GameAlgorithm.ThreatSearch;
+import com.tictactoe.GomokuApp.TILE_STATUS;
+import com.tictactoe.GomokuApp.TURN;
+
+public class ThreatSearchTest {
+	// findVCF() and findDefences() on a 9x9 position where the computer has a VCF of two moves:
+	// (4,4) makes the four 1-4 of row 4, the person must block at (4,5), and (7,4) makes the open four 4-7
+	// of column 4. the person also has the three 0-2 of row 0, which makes a four at (0,3) that only delays it
+
+	private static final int N = 9;
+
+	@Test
+	public void findsKnownVCF() {
+		GameAlgorithm algorithm = algorithm();
+		BitBoard state = algorithm.new BitBoard(position());
+		ThreatSearch search = algorithm.new ThreatSearch();
+
+		assertEquals(at(4, 4), search.findVCF(state, TURN.COMPUTER_TURN, 20000));
+		assertTrue(search.isComplete());
+		assertEquals(-1, search.findVCF(state, TURN.PERSON_TURN, 20000));
+		assertTrue(search.isComplete());
+
+		// (4,4) is not a double four, the VCF needs the second move
+		assertEquals(1, algorithm.countThreats(state, at(4, 4), TURN.COMPUTER_TURN, null));
+		assertTrue(algorithm.new BitBoard(position()).sameAs(state));
+	}
+
+	@Test
+	public void fourOfDefenderOnlyDelays() {
+		GameAlgorithm algorithm = algorithm();
+		BitBoard state = algorithm.new BitBoard(position());
+		ThreatSearch search = algorithm.new ThreatSearch();
+
+		int[] defences = new int[N * N];
+		int count = search.findDefences(state, TURN.PERSON_TURN, 20000, null, defences);
+		int[] found = Arrays.copyOf(defences, count);
+		String message = Arrays.toString(found);
+
+		assertTrue(contains(found, at(4, 4)), message);
+		assertTrue(contains(found, at(4, 5)), message);
+		assertFalse(contains(found, at(0, 3)), message); // the computer blocks at (0,4) and plays the VCF
+		assertFalse(contains(found, at(8, 8)), message);
+		assertTrue(algorithm.new BitBoard(position()).sameAs(state));
+	}
+
+	@Test
+	public void nodeLimitProvesNothing() {
+		GameAlgorithm algorithm = algorithm();
+		BitBoard state = algorithm.new BitBoard(position());
+		ThreatSearch search = algorithm.new ThreatSearch();
+
+		assertEquals(-1, search.findVCF(state, TURN.COMPUTER_TURN, 1));
+		assertFalse(search.isComplete());
+
+		int[] defences = new int[N * N];
+		int count = search.findDefences(state, TURN.PERSON_TURN, 1, null, defences);
+		int[] found = Arrays.copyOf(defences, count);
+		// (4,4) leaves the computer without a single four, which one game state proves
+		assertTrue(contains(found, at(4, 4)), Arrays.toString(found));
+		assertFalse(contains(found, at(8, 8)), Arrays.toString(found));
+	}
+
+	private static GameAlgorithm algorithm() {
+		GameAlgorithm algorithm = new GameAlgorithm(position());
+		algorithm.NEIGHBOURDISTANCE = 0;
+		algorithm.VCFDEPTH = 15;
+		return algorithm;
+	}
+
+	private static TILE_STATUS[] position() {
+		TILE_STATUS[] table = new TILE_STATUS[N * N];
+		Arrays.fill(table, TILE_STATUS.TILE_STATUS_EMPTY);
+		for (int column = 1; column <= 3; column++)
+			table[at(4, column)] = TILE_STATUS.TILE_STATUS_COMPUTER;
+		table[at(5, 4)] = TILE_STATUS.TILE_STATUS_COMPUTER;
+		table[at(6, 4)] = TILE_STATUS.TILE_STATUS_COMPUTER;
+		table[at(4, 0)] = TILE_STATUS.TILE_STATUS_PERSON;
+		for (int column = 0; column <= 2; column++)
+			table[at(0, column)] = TILE_STATUS.TILE_STATUS_PERSON;
+		return table;
+	}
+
+	private static int at(int row, int column) {
+		return row * N + column;
+	}
+
+	private static boolean contains(int[] moves, int move) {
+		for (int m : moves) {
+			if (m == move)
+				return true;
+		}
+		return false;
+	}
+}
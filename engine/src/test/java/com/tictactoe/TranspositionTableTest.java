@@ -0,0 +1,109 @@
+package com.tictactoe;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import com.tictactoe.GameAlgorithm.MCTSNode;
+import com.tictactoe.GameAlgorithm.TranspositionTable;
+import com.tictactoe.GomokuApp.TILE_STATUS;
+import com.tictactoe.GomokuApp.TURN;
+
+public class TranspositionTableTest {
+	// the linking of transposed game states by expand() with TRANSPOSITION_MODE = 1, and the replacement
+	// policy of the TranspositionTable: a full bucket gives up its least visited node
+
+	private static final int N = 5;
+
+	@Test
+	public void transposedMoveOrdersShareOneNode() {
+		GameAlgorithm algorithm = new GameAlgorithm(emptyTable());
+		algorithm.TRANSPOSITION_MODE = 1;
+		algorithm.TRANSPOSITIONTABLEBITS = 12;
+		algorithm.prepareTranspositionTable(true);
+
+		// computer 0, person 1, computer 2 and computer 2, person 1, computer 0 reach the same game state
+		MCTSNode first = walk(algorithm, 0, 1, 2);
+		MCTSNode second = walk(algorithm, 2, 1, 0);
+		assertSame(first, second);
+		assertSame(first, algorithm.getTranspositionTable().find(first.getPositionHash()));
+
+		// a different game state gets its own node
+		assertNotSame(first, walk(algorithm, 0, 1, 3));
+	}
+
+	@Test
+	public void withoutTableMoveOrdersGetOwnNodes() {
+		GameAlgorithm algorithm = new GameAlgorithm(emptyTable());
+		algorithm.TRANSPOSITION_MODE = 0;
+		algorithm.prepareTranspositionTable(true);
+		assertNull(algorithm.getTranspositionTable());
+
+		MCTSNode first = walk(algorithm, 0, 1, 2);
+		MCTSNode second = walk(algorithm, 2, 1, 0);
+		assertNotSame(first, second);
+		assertEquals(first.getPositionHash(), second.getPositionHash());
+	}
+
+	@Test
+	public void fullBucketReplacesLeastVisitedNode() {
+		GameAlgorithm algorithm = new GameAlgorithm(emptyTable());
+		TranspositionTable table = algorithm.new TranspositionTable(2); // a single bucket of 4 slots
+
+		MCTSNode[] nodes = new MCTSNode[5];
+		int[] visits = { 5, 1, 7, 3, 0 };
+		for (int i = 0; i < nodes.length; i++) {
+			TILE_STATUS[] tiles = emptyTable();
+			tiles[i] = TILE_STATUS.TILE_STATUS_PERSON;
+			nodes[i] = algorithm.new MCTSNode(algorithm.new BitBoard(tiles), TURN.COMPUTER_TURN, i, 1);
+			nodes[i].timesVisited = visits[i];
+		}
+		for (int i = 0; i < 4; i++)
+			assertSame(nodes[i], table.findOrStore(nodes[i]));
+
+		// a node of a stored game state is not stored again, the stored one is returned
+		TILE_STATUS[] tiles = emptyTable();
+		tiles[2] = TILE_STATUS.TILE_STATUS_PERSON;
+		MCTSNode again = algorithm.new MCTSNode(algorithm.new BitBoard(tiles), TURN.COMPUTER_TURN, 2, 1);
+		assertSame(nodes[2], table.findOrStore(again));
+
+		assertSame(nodes[4], table.findOrStore(nodes[4]));
+		assertNull(table.find(nodes[1].getPositionHash()));
+		for (int i : new int[] { 0, 2, 3, 4 })
+			assertSame(nodes[i], table.find(nodes[i].getPositionHash()));
+
+		table.clear();
+		for (MCTSNode node : nodes)
+			assertNull(table.find(node.getPositionHash()));
+	}
+
+	private static MCTSNode walk(GameAlgorithm algorithm, int... moves) {
+		// the node reached from a new top node by moves, expanding the nodes on the way.
+		// every node gets the child nodes of all empty tiles, so that any move can be followed
+		algorithm.WIDENING_MODE = 0;
+		algorithm.NEIGHBOURDISTANCE = 0;
+		GameAlgorithm.BitBoard state = algorithm.new BitBoard(emptyTable());
+		MCTSNode node = algorithm.new MCTSNode(state, TURN.COMPUTER_TURN, -1, 0);
+		TranspositionTable table = algorithm.getTranspositionTable();
+		if (table != null)
+			node = table.findOrStore(node);
+		for (int move : moves) {
+			node.expand();
+			node = node.findChild(move);
+			assertNotNull(node, "move " + move);
+		}
+		return node;
+	}
+
+	private static TILE_STATUS[] emptyTable() {
+		TILE_STATUS[] table = new TILE_STATUS[N * N];
+		Arrays.fill(table, TILE_STATUS.TILE_STATUS_EMPTY);
+		return table;
+	}
+}